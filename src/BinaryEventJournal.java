@@ -0,0 +1,262 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * Asynchronous, garbage-free binary event journal (the default event sink).
+ * Producers claim a fixed 32-byte record in a pre-allocated direct buffer,
+ * fill it with absolute puts and publish it; a background flusher writes
+ * published records to the file in large contiguous chunks. One daemon
+ * flusher thread serves every open journal in the process, so hundreds of
+ * OMS instances don't mean hundreds of threads. close() writes whatever is
+ * left on the caller's thread.
+ * Producers never block or allocate - if the flusher falls behind and the
+ * buffer is full, the event is dropped and counted instead.
+ *
+ * Record layout (little endian):
+ *   0  long  wall clock time, epoch nanos
+ *   8  long  orderId
+ *   16 long  value (qty for orders, latency nanos for responses, age for timeouts)
+ *   24 int   symbolId
+ *   28 byte  event type (EVENT_* below)
+ *   29 byte  code (RejectReason / ResponseType ordinal)
+ *   30 short reserved
+ */
+public class BinaryEventJournal implements OmsEventSink {
+    public static final int RECORD_SIZE = 32;
+    public static final byte EVENT_ORDER_SENT = 1;
+    public static final byte EVENT_ORDER_REJECTED = 2;
+    public static final byte EVENT_RESPONSE = 3;
+    public static final byte EVENT_LOGON = 4;
+    public static final byte EVENT_LOGOUT = 5;
+    public static final byte EVENT_ORDER_TIMEOUT = 6;
+
+    private static final long FLUSH_IDLE_NANOS = 1_000_000;
+    private static final SharedFlusher FLUSHER = new SharedFlusher();
+
+    // Lazily started; runs for the life of the process like TimingWheelScheduler.shared()
+    private static final class SharedFlusher implements Runnable {
+        private final CopyOnWriteArrayList<BinaryEventJournal> journals = new CopyOnWriteArrayList<>();
+        private Thread thread;
+
+        synchronized void register(BinaryEventJournal journal) {
+            journals.add(journal);
+            if (thread == null) {
+                thread = new Thread(this, "oms-journal-flusher");
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+
+        void unregister(BinaryEventJournal journal) {
+            journals.remove(journal);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                int flushed = 0;
+                for (BinaryEventJournal journal : journals) {
+                    flushed += journal.flushPending();
+                }
+                if (flushed == 0) {
+                    LockSupport.parkNanos(FLUSH_IDLE_NANOS);
+                }
+            }
+        }
+    }
+
+    private final ByteBuffer buffer;
+    private final ByteBuffer flushView;
+    private final AtomicLongArray availableSequence;
+    private final int mask;
+    private final AtomicLong claimSequence = new AtomicLong(0);
+    private final AtomicLong droppedEvents = new AtomicLong(0);
+    private volatile long consumerSequence = 0;
+
+    private final FileChannel channel;
+    private final ReentrantLock flushLock = new ReentrantLock(); // shared flusher vs close()
+    private boolean closed; // guarded by flushLock
+
+    // Wall clock base so each record only needs a nanoTime read
+    private final long baseEpochNanos = System.currentTimeMillis() * 1_000_000L;
+    private final long baseNanoTime = System.nanoTime();
+
+    public BinaryEventJournal(Path file, int capacityRecords) {
+        if (capacityRecords <= 0 || Integer.bitCount(capacityRecords) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacityRecords);
+        }
+        this.buffer = ByteBuffer.allocateDirect(capacityRecords * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        this.flushView = buffer.duplicate();
+        this.availableSequence = new AtomicLongArray(capacityRecords);
+        this.mask = capacityRecords - 1;
+        for (int i = 0; i < capacityRecords; i++) {
+            availableSequence.set(i, -1);
+        }
+        try {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open event journal " + file, e);
+        }
+        FLUSHER.register(this);
+    }
+
+    @Override
+    public void onOrderSent(OrderRequest order) {
+        append(EVENT_ORDER_SENT, 0, order.m_orderId, order.m_symbolId, order.m_qty);
+    }
+
+    @Override
+    public void onOrderRejected(OrderRequest order, RejectReason reason) {
+        append(EVENT_ORDER_REJECTED, reason.ordinal(), order.m_orderId, order.m_symbolId, order.m_qty);
+    }
+
+    @Override
+    public void onResponse(OrderResponse response, long latencyNanos) {
+        append(EVENT_RESPONSE, response.m_responseType.ordinal(), response.m_orderId, 0, latencyNanos);
+    }
+
+    @Override
+    public void onOrderTimeout(long orderId, int symbolId, long ageNanos) {
+        append(EVENT_ORDER_TIMEOUT, 0, orderId, symbolId, ageNanos);
+    }
+
+    @Override
+    public void onLogon() {
+        append(EVENT_LOGON, 0, 0, 0, 0);
+    }
+
+    @Override
+    public void onLogout() {
+        append(EVENT_LOGOUT, 0, 0, 0, 0);
+    }
+
+    public long droppedEvents() {
+        return droppedEvents.get();
+    }
+
+    private void append(byte type, int code, long orderId, int symbolId, long value) {
+        long sequence;
+        do {
+            sequence = claimSequence.get();
+            if (sequence - consumerSequence > mask) {
+                droppedEvents.incrementAndGet();
+                return;
+            }
+        } while (!claimSequence.compareAndSet(sequence, sequence + 1));
+
+        int index = (int) sequence & mask;
+        int offset = index * RECORD_SIZE;
+        buffer.putLong(offset, baseEpochNanos + (System.nanoTime() - baseNanoTime));
+        buffer.putLong(offset + 8, orderId);
+        buffer.putLong(offset + 16, value);
+        buffer.putInt(offset + 24, symbolId);
+        buffer.put(offset + 28, type);
+        buffer.put(offset + 29, (byte) code);
+        buffer.putShort(offset + 30, (short) 0);
+        availableSequence.lazySet(index, sequence);
+    }
+
+    // Called by the shared flusher; returns the number of records written
+    private int flushPending() {
+        if (!flushLock.tryLock()) {
+            return 0; // closing
+        }
+        try {
+            return closed ? 0 : flushAvailable();
+        } catch (IOException e) {
+            System.err.println("Event journal write failed, dropping further events: " + e);
+            closed = true;
+            FLUSHER.unregister(this);
+            closeChannel();
+            return 0;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // Writes every contiguous published record; returns how many were written
+    private int flushAvailable() throws IOException {
+        long start = consumerSequence;
+        long end = start;
+        while (end - start <= mask && availableSequence.get((int) end & mask) == end) {
+            end++;
+        }
+        int count = (int) (end - start);
+        if (count == 0) {
+            return 0;
+        }
+        int from = (int) start & mask;
+        int firstRun = Math.min(count, mask + 1 - from);
+        writeRecords(from, firstRun);
+        if (count > firstRun) {
+            writeRecords(0, count - firstRun);
+        }
+        consumerSequence = end;
+        return count;
+    }
+
+    private void writeRecords(int fromIndex, int count) throws IOException {
+        flushView.clear();
+        flushView.position(fromIndex * RECORD_SIZE);
+        flushView.limit((fromIndex + count) * RECORD_SIZE);
+        while (flushView.hasRemaining()) {
+            channel.write(flushView);
+        }
+    }
+
+    // Writes what is published (claimed but unpublished records are lost with
+    // their producer), then closes the file
+    @Override
+    public void close() {
+        FLUSHER.unregister(this);
+        flushLock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            while (flushAvailable() > 0) {
+                // drain
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            System.err.println("Event journal write failed: " + e);
+        } finally {
+            closeChannel();
+            flushLock.unlock();
+        }
+    }
+
+    private void closeChannel() {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    // Debug helper: prints a journal file in readable form
+    public static void dump(Path file, PrintStream out) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (in.read(record) == RECORD_SIZE) {
+                record.flip();
+                out.printf("%d type=%d code=%d orderId=%d symbol=%d value=%d%n",
+                        record.getLong(0), record.get(28), record.get(29),
+                        record.getLong(8), record.getInt(24), record.getLong(16));
+                record.clear();
+            }
+        }
+    }
+}
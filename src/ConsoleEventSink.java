@@ -0,0 +1,48 @@
+/*
+ * Prints events to stdout, the way the OMS always used to.
+ * Synchronous and allocating - for debugging and the test harness only.
+ */
+public class ConsoleEventSink implements OmsEventSink {
+    @Override
+    public void onOrderSent(OrderRequest order) {
+        System.out.println("Sending order: " + order.m_orderId);
+    }
+
+    @Override
+    public void onOrderRejected(OrderRequest order, RejectReason reason) {
+        switch (reason) {
+            case OutsideTradingHours:
+                System.out.println("[Rejected] Order outside trading hours");
+                break;
+            case IngressFull:
+                System.out.println("[Rejected] Ingress ring buffer full");
+                break;
+            case UnsupportedRequest:
+                System.out.println("Unsupported request type");
+                break;
+            default:
+                System.out.println("[Rejected] Order " + order.m_orderId + ": " + reason);
+        }
+    }
+
+    @Override
+    public void onResponse(OrderResponse response, long latencyNanos) {
+        System.out.printf("Response: ID=%d, Status=%s, Latency=%dus%n",
+                response.m_orderId, response.m_responseType, latencyNanos / 1_000);
+    }
+
+    @Override
+    public void onOrderTimeout(long orderId, int symbolId, long ageNanos) {
+        System.out.printf("[Timeout] No response for order %d after %dms%n", orderId, ageNanos / 1_000_000);
+    }
+
+    @Override
+    public void onLogon() {
+        System.out.println(">> Logon message sent");
+    }
+
+    @Override
+    public void onLogout() {
+        System.out.println(">> Logout message sent");
+    }
+}
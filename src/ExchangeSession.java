@@ -0,0 +1,525 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Exchange Session
+ * ----------------
+ * Non-blocking TCP connection to the exchange, run by a single I/O thread
+ * on an NIO Selector. Messages use the binary WireFormat.
+ *
+ * State machine (driven by OrderManagement.verifyTradingWindow through
+ * logon()/logout()):
+ *   Disconnected -> Connecting -> LogonSent -> LoggedOn -> LogoutSent -> Disconnected
+ * While LoggedOn a Heartbeat goes out whenever nothing else was sent for
+ * heartbeatInterval. A connection lost between logon() and logout() (socket
+ * error, refused connect, protocol error, exchange Logout) goes back to
+ * Disconnected and is retried with exponential backoff.
+ *
+ * Outbound: OMS threads encode orders straight into one outbound buffer and
+ * try a non-blocking write themselves; whatever the socket doesn't take is
+ * left for the I/O thread (OP_WRITE). A batch is encoded back to back, so it
+ * goes out in one write. Orders sent before the exchange acks the Logon are
+ * held in the buffer behind it. Orders are only taken while LoggedOn or
+ * while a wanted logon is under way - never during a reconnect backoff or
+ * after logout(), where they could sit past the OMS's in-flight timeout and
+ * reach the exchange after the OMS has forgotten them. An order refused
+ * like that or for lack of buffer space, or still buffered when the
+ * connection drops or logout() comes, never reached the exchange: it is
+ * refused by send()/sendBatch() or handed back through
+ * OrderManagement.onTransmitFailed.
+ * Inbound: responses are decoded by the owning OrderManagement in place
+ * (onData(ByteBuffer, int)).
+ */
+public class ExchangeSession {
+    private static final int INBOUND_BUFFER_SIZE = 64 * 1024;
+    private static final int OUTBOUND_BUFFER_SIZE = 1024 * 1024;
+    // Orders always leave room for a Logon to be put in front of them
+    private static final int ORDER_SPACE = OrderRequestFlyweight.ENCODED_LENGTH + WireFormat.HEADER_LENGTH;
+    private static final long INITIAL_RECONNECT_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long MAX_RECONNECT_DELAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private static final int COMMAND_NONE = 0;
+    private static final int COMMAND_LOGON = 1;
+    private static final int COMMAND_LOGOUT = 2;
+
+    private final InetSocketAddress address;
+    private final long heartbeatIntervalNanos;
+    private final PriceScales priceScales; // null = double prices on the wire
+    private final ByteBuffer inbound = ByteBuffer.allocateDirect(INBOUND_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final ByteBuffer outbound = ByteBuffer.allocateDirect(OUTBOUND_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final Object outboundLock = new Object();
+
+    private final Selector selector;
+    private final Thread ioThread;
+    private OrderManagement oms;
+
+    private volatile SessionState state = SessionState.Disconnected;
+    private volatile int pendingCommand = COMMAND_NONE;
+    private volatile boolean running = true;
+    private volatile boolean logonWanted; // between logon() and logout(): lost connections are retried
+    private volatile boolean connectionLost; // a write failed; the I/O thread disconnects
+    private volatile boolean backingOff; // disconnected until the next connect attempt
+    private volatile SocketChannel channel;
+    private volatile SelectionKey key;
+    private long reconnectAtNanos; // I/O thread only
+    private long reconnectDelayNanos = INITIAL_RECONNECT_DELAY_NANOS; // I/O thread only
+    private final OrderRequest unsentOrder = new OrderRequest(); // I/O thread only
+
+    // Guarded by outboundLock
+    private long lastSendNanos;
+    private int logonBytes; // bytes at the front of outbound that may go before the Logon is acked
+    private int headWritten; // bytes of the first buffered message already written (0 = on a boundary)
+    private int headLength;
+    private final OrderRequest partialHead = new OrderRequest(); // that message, when it is an order
+    private boolean partialHeadIsOrder;
+
+    public ExchangeSession(InetSocketAddress address, long heartbeatIntervalMillis, PriceScales priceScales) {
+        this.address = address;
+        this.priceScales = priceScales;
+        this.heartbeatIntervalNanos = TimeUnit.MILLISECONDS.toNanos(heartbeatIntervalMillis);
+        try {
+            this.selector = Selector.open();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot open selector", e);
+        }
+        this.ioThread = new Thread(this::runIoLoop, "oms-exchange-session");
+        ioThread.setDaemon(true);
+    }
+
+    // Inbound responses and unsent orders are handed to this OMS; must be called once before logon
+    public void start(OrderManagement owner) {
+        this.oms = owner;
+        ioThread.start();
+    }
+
+    public SessionState state() {
+        return state;
+    }
+
+    public void logon() {
+        logonWanted = true;
+        backingOff = false; // connects right away
+        pendingCommand = COMMAND_LOGON;
+        selector.wakeup();
+    }
+
+    public void logout() {
+        logonWanted = false;
+        pendingCommand = COMMAND_LOGOUT;
+        selector.wakeup();
+    }
+
+    // Returns false, without buffering anything, when the session isn't taking
+    // orders or the outbound buffer is full
+    public boolean send(OrderRequest order) {
+        synchronized (outboundLock) {
+            if (!acceptingOrders() || !ensureSpace(ORDER_SPACE)) {
+                return false;
+            }
+            outbound.position(outbound.position() + encode(order));
+            flushOutbound();
+            return true;
+        }
+    }
+
+    // Caller holds outboundLock
+    private int encode(OrderRequest order) {
+        if (priceScales == null) {
+            return OrderRequestFlyweight.encode(order, outbound, outbound.position());
+        }
+        return OrderRequestFlyweight.encode(order, outbound, outbound.position(),
+                priceScales.scale(order.m_symbolId));
+    }
+
+    // Encodes the whole batch and writes it with a single flush. Returns how
+    // many orders were buffered: once one doesn't fit the rest are refused
+    // too, so nothing goes out of order.
+    public int sendBatch(OrderRequest[] orders, int count) {
+        synchronized (outboundLock) {
+            if (!acceptingOrders()) {
+                return 0;
+            }
+            int buffered = 0;
+            while (buffered < count && ensureSpace(ORDER_SPACE)) {
+                outbound.position(outbound.position() + encode(orders[buffered]));
+                buffered++;
+            }
+            flushOutbound();
+            return buffered;
+        }
+    }
+
+    // Caller holds outboundLock
+    private boolean acceptingOrders() {
+        SessionState current = state;
+        if (current == SessionState.LoggedOn) {
+            return true;
+        }
+        return logonWanted && !backingOff && current != SessionState.LogoutSent;
+    }
+
+    public void close() {
+        running = false;
+        selector.wakeup();
+        try {
+            ioThread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runIoLoop() {
+        long selectTimeoutMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(heartbeatIntervalNanos) / 2);
+        try {
+            while (running) {
+                selector.select(selectTimeout(selectTimeoutMillis));
+                handleCommand();
+                if (connectionLost) {
+                    disconnect();
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey selected = keys.next();
+                    keys.remove();
+                    if (!selected.isValid()) {
+                        continue;
+                    }
+                    if (selected.isConnectable()) {
+                        onConnected();
+                    }
+                    if (selected.isValid() && selected.isReadable()) {
+                        onReadable();
+                    }
+                    if (selected.isValid() && selected.isWritable()) {
+                        synchronized (outboundLock) {
+                            flushOutbound();
+                        }
+                    }
+                }
+                sendHeartbeatIfIdle();
+                reconnectIfDue();
+            }
+        } catch (IOException e) {
+            System.err.println("Exchange session I/O loop failed: " + e);
+        } finally {
+            disconnect();
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    // Wakes up in time for a pending reconnect
+    private long selectTimeout(long selectTimeoutMillis) {
+        if (state != SessionState.Disconnected || !logonWanted) {
+            return selectTimeoutMillis;
+        }
+        long untilReconnect = TimeUnit.NANOSECONDS.toMillis(reconnectAtNanos - System.nanoTime());
+        return Math.max(1, Math.min(selectTimeoutMillis, untilReconnect));
+    }
+
+    private void handleCommand() throws IOException {
+        int command = pendingCommand;
+        if (command == COMMAND_NONE) {
+            return;
+        }
+        pendingCommand = COMMAND_NONE;
+        if (command == COMMAND_LOGON && state == SessionState.Disconnected) {
+            reconnectDelayNanos = INITIAL_RECONNECT_DELAY_NANOS;
+            connect();
+        } else if (command == COMMAND_LOGOUT && state == SessionState.LoggedOn) {
+            state = SessionState.LogoutSent;
+            sendSessionMessage(WireFormat.LOGOUT_TEMPLATE_ID);
+        } else if (command == COMMAND_LOGOUT && state != SessionState.LogoutSent) {
+            disconnect(); // not logged on, so whatever is buffered is handed back
+        }
+    }
+
+    private void reconnectIfDue() throws IOException {
+        if (state == SessionState.Disconnected && logonWanted && System.nanoTime() - reconnectAtNanos >= 0) {
+            connect();
+        }
+    }
+
+    private void connect() throws IOException {
+        SocketChannel socket = SocketChannel.open();
+        socket.configureBlocking(false);
+        socket.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        // Orders may already be buffered - the Logon has to go out ahead of them
+        synchronized (outboundLock) {
+            prependLogon();
+            backingOff = false;
+        }
+        channel = socket;
+        state = SessionState.Connecting;
+        try {
+            if (socket.connect(address)) {
+                key = socket.register(selector, SelectionKey.OP_READ);
+                onLogonWritable();
+            } else {
+                key = socket.register(selector, SelectionKey.OP_CONNECT);
+            }
+        } catch (IOException e) {
+            System.err.println("Exchange connect failed: " + e);
+            disconnect();
+        }
+    }
+
+    private void onConnected() {
+        try {
+            channel.finishConnect();
+            key.interestOps(SelectionKey.OP_READ);
+            onLogonWritable();
+        } catch (IOException e) {
+            System.err.println("Exchange connect failed: " + e);
+            disconnect();
+        }
+    }
+
+    // Only the Logon goes now; orders behind it wait for the exchange's ack
+    private void onLogonWritable() {
+        state = SessionState.LogonSent;
+        synchronized (outboundLock) {
+            flushOutbound();
+        }
+    }
+
+    // Caller holds outboundLock. Shifts buffered orders up to put a Logon at the
+    // front; there is always room, since orders leave it free (ORDER_SPACE) and
+    // nothing else is buffered while disconnected.
+    private void prependLogon() {
+        int buffered = outbound.position();
+        for (int i = buffered - 1; i >= 0; i--) {
+            outbound.put(i + WireFormat.HEADER_LENGTH, outbound.get(i));
+        }
+        WireFormat.encodeSessionMessage(outbound, 0, WireFormat.LOGON_TEMPLATE_ID);
+        outbound.position(buffered + WireFormat.HEADER_LENGTH);
+        logonBytes = WireFormat.HEADER_LENGTH;
+        headWritten = 0;
+    }
+
+    private void onReadable() {
+        int read;
+        try {
+            read = channel.read(inbound);
+        } catch (IOException e) {
+            read = -1;
+        }
+        if (read < 0) {
+            disconnect();
+            return;
+        }
+
+        inbound.flip();
+        int offset = inbound.position();
+        while (inbound.limit() - offset >= WireFormat.HEADER_LENGTH) {
+            int blockLength = WireFormat.blockLength(inbound, offset);
+            int template = WireFormat.templateId(inbound, offset);
+            // A length we can't trust means the stream is out of step; nothing after it can be parsed
+            if (blockLength < 0 || WireFormat.HEADER_LENGTH + blockLength > INBOUND_BUFFER_SIZE
+                    || (template == WireFormat.ORDER_RESPONSE_TEMPLATE_ID
+                        && blockLength < OrderResponseFlyweight.BLOCK_LENGTH)) {
+                System.err.println("Exchange protocol error: template " + template + ", block length " + blockLength);
+                disconnect();
+                return;
+            }
+            int length = WireFormat.HEADER_LENGTH + blockLength;
+            if (inbound.limit() - offset < length) {
+                break;
+            }
+            switch (template) {
+                case WireFormat.ORDER_RESPONSE_TEMPLATE_ID:
+                    oms.onData(inbound, offset);
+                    break;
+                case WireFormat.LOGON_TEMPLATE_ID:
+                    state = SessionState.LoggedOn;
+                    reconnectDelayNanos = INITIAL_RECONNECT_DELAY_NANOS;
+                    synchronized (outboundLock) {
+                        flushOutbound(); // releases the orders held behind the Logon
+                    }
+                    break;
+                case WireFormat.LOGOUT_TEMPLATE_ID:
+                    disconnect();
+                    return;
+                default:
+                    break; // heartbeats and unknown messages
+            }
+            offset += length;
+        }
+        inbound.position(offset);
+        inbound.compact();
+    }
+
+    private void sendHeartbeatIfIdle() {
+        if (state != SessionState.LoggedOn) {
+            return;
+        }
+        synchronized (outboundLock) {
+            if (System.nanoTime() - lastSendNanos >= heartbeatIntervalNanos) {
+                sendSessionMessage(WireFormat.HEARTBEAT_TEMPLATE_ID);
+            }
+        }
+    }
+
+    private void sendSessionMessage(short templateId) {
+        synchronized (outboundLock) {
+            if (ensureSpace(WireFormat.HEADER_LENGTH)) {
+                int length = WireFormat.encodeSessionMessage(outbound, outbound.position(), templateId);
+                outbound.position(outbound.position() + length);
+            } else {
+                System.err.println("Exchange session outbound buffer full, dropping session message");
+            }
+            flushOutbound();
+        }
+    }
+
+    // Caller holds outboundLock
+    private boolean ensureSpace(int length) {
+        if (outbound.remaining() >= length) {
+            return true;
+        }
+        flushOutbound();
+        return outbound.remaining() >= length;
+    }
+
+    // Caller holds outboundLock. Non-blocking: leftovers are finished by the I/O thread.
+    // Until the Logon is acked only the Logon itself is written.
+    private void flushOutbound() {
+        SocketChannel socket = channel;
+        SelectionKey selectionKey = key;
+        if (socket == null || !socket.isConnected() || outbound.position() == 0) {
+            return;
+        }
+        SessionState current = state;
+        boolean loggedOn = current == SessionState.LoggedOn || current == SessionState.LogoutSent;
+        int writable = loggedOn ? outbound.position() : Math.min(logonBytes, outbound.position());
+        int written = 0;
+        if (writable > 0) {
+            outbound.flip();
+            int end = outbound.limit();
+            outbound.limit(writable);
+            try {
+                written = socket.write(outbound);
+            } catch (IOException e) {
+                System.err.println("Exchange write failed: " + e);
+                written = outbound.position();
+                connectionLost = true;
+                selector.wakeup();
+            }
+            outbound.limit(end);
+            outbound.position(0);
+            trackWritten(written);
+            outbound.position(written);
+            outbound.compact();
+            logonBytes -= Math.min(logonBytes, written);
+            lastSendNanos = System.nanoTime();
+        }
+        if (selectionKey != null && selectionKey.isValid()) {
+            boolean pending = written < writable && !connectionLost;
+            int ops = pending ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ;
+            if (selectionKey.interestOps() != ops) {
+                selectionKey.interestOps(ops);
+                selector.wakeup();
+            }
+        }
+    }
+
+    // Caller holds outboundLock; the first `written` bytes of outbound just went
+    // out. Remembers where that leaves the first message still buffered, so a
+    // disconnect knows which orders never got onto the wire in full.
+    private void trackWritten(int written) {
+        int offset = 0;
+        if (headWritten > 0) {
+            int rest = headLength - headWritten;
+            if (written < rest) {
+                headWritten += written;
+                return;
+            }
+            offset = rest;
+            headWritten = 0;
+        }
+        while (offset < written) {
+            int length = WireFormat.messageLength(outbound, offset);
+            if (offset + length > written) {
+                headWritten = written - offset;
+                headLength = length;
+                partialHeadIsOrder = WireFormat.templateId(outbound, offset) == WireFormat.ORDER_REQUEST_TEMPLATE_ID;
+                if (partialHeadIsOrder) {
+                    OrderRequestFlyweight.decode(outbound, offset, partialHead);
+                }
+                return;
+            }
+            offset += length;
+        }
+    }
+
+    // I/O thread only. Orders still buffered (including one cut off mid-write)
+    // never reached the exchange and are handed back to the OMS; a connection
+    // the OMS still wants is retried after the backoff.
+    private void disconnect() {
+        SocketChannel socket = channel;
+        channel = null;
+        key = null;
+        state = SessionState.Disconnected;
+        connectionLost = false;
+        inbound.clear();
+        ByteBuffer unsent;
+        OrderRequest cutOff = null;
+        synchronized (outboundLock) {
+            int start = 0;
+            if (headWritten > 0) {
+                start = headLength - headWritten;
+                if (partialHeadIsOrder) {
+                    cutOff = new OrderRequest();
+                    cutOff.m_orderId = partialHead.m_orderId;
+                    cutOff.m_symbolId = partialHead.m_symbolId;
+                    cutOff.m_requestType = partialHead.m_requestType;
+                    cutOff.m_side = partialHead.m_side;
+                    cutOff.m_price = partialHead.m_price;
+                    cutOff.m_fixedPrice = partialHead.m_fixedPrice;
+                    cutOff.m_qty = partialHead.m_qty;
+                }
+            }
+            unsent = ByteBuffer.allocate(Math.max(0, outbound.position() - start)).order(ByteOrder.LITTLE_ENDIAN);
+            unsent.put(0, outbound, start, unsent.capacity());
+            outbound.clear();
+            headWritten = 0;
+            logonBytes = 0;
+            backingOff = true; // until connect(), or logon() after a logout
+        }
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+        // Reported outside outboundLock: the OMS takes its stateLock
+        if (oms != null) {
+            if (cutOff != null) {
+                oms.onTransmitFailed(cutOff);
+            }
+            int offset = 0;
+            while (unsent.capacity() - offset >= WireFormat.HEADER_LENGTH) {
+                if (WireFormat.templateId(unsent, offset) == WireFormat.ORDER_REQUEST_TEMPLATE_ID) {
+                    OrderRequestFlyweight.decode(unsent, offset, unsentOrder);
+                    oms.onTransmitFailed(unsentOrder);
+                }
+                offset += WireFormat.messageLength(unsent, offset);
+            }
+        }
+        if (running && logonWanted) {
+            reconnectAtNanos = System.nanoTime() + reconnectDelayNanos;
+            reconnectDelayNanos = Math.min(reconnectDelayNanos * 2, MAX_RECONNECT_DELAY_NANOS);
+        }
+    }
+}
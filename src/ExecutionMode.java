@@ -0,0 +1,3 @@
+public enum ExecutionMode {
+    SharedScheduler, VirtualThreads
+}
@@ -0,0 +1,54 @@
+import java.util.Arrays;
+
+/*
+ * Fat-finger check: rejects orders priced more than the symbol's maximum
+ * deviation (in basis points) away from its reference price, typically the
+ * last trade or mid fed in from market data via setReferencePrice.
+ * Symbols without a reference price yet are not checked.
+ *
+ * Reference prices are plain array writes, so a market-data thread can
+ * update them while the OMS reads; a check may briefly see the previous
+ * price. Prices (fixed-point) must stay below ~9 x 10^14 so the basis point
+ * arithmetic fits in a long.
+ */
+public class FatFingerCheck implements PreTradeCheck {
+    private static final long BPS_PER_UNIT = 10_000;
+
+    private final long[] referencePrices;
+    private final int[] maxDeviationBps;
+
+    public FatFingerCheck(int symbolCapacity, int defaultMaxDeviationBps) {
+        this.referencePrices = new long[symbolCapacity];
+        this.maxDeviationBps = new int[symbolCapacity];
+        Arrays.fill(maxDeviationBps, defaultMaxDeviationBps);
+    }
+
+    public FatFingerCheck setMaxDeviation(int symbolId, int bps) {
+        maxDeviationBps[symbolId] = bps;
+        return this;
+    }
+
+    public void setReferencePrice(int symbolId, long price) {
+        referencePrices[symbolId] = price;
+    }
+
+    @Override
+    public int symbolCapacity() {
+        return referencePrices.length;
+    }
+
+    @Override
+    public String name() {
+        return "FatFinger";
+    }
+
+    @Override
+    public boolean accept(OrderRequest order, long price) {
+        long reference = referencePrices[order.m_symbolId];
+        if (reference <= 0) {
+            return true;
+        }
+        long deviation = Math.abs(price - reference);
+        return deviation * BPS_PER_UNIT <= reference * maxDeviationBps[order.m_symbolId];
+    }
+}
@@ -0,0 +1,200 @@
+import java.util.Arrays;
+
+/*
+ * Orders sent to the exchange and still waiting for a response, with a
+ * hashed timing wheel that expires the ones never answered.
+ *
+ * Each order is a slot in parallel primitive arrays (orderId, symbolId,
+ * send time, deadline, wheel links); a LongLongHashMap maps orderId to its
+ * slot. The wheel is an array of buckets, each the head of an intrusive
+ * doubly-linked list of slots whose deadline falls into that tick, so add,
+ * remove and expire are all O(1) per order and nothing is allocated once
+ * the arrays have grown to the peak in-flight count - which the timeout
+ * bounds to roughly rate x timeout, however many responses go missing.
+ * Orders expire at most one tick after their deadline.
+ *
+ * With timeoutNanos == 0 orders are tracked but never expire.
+ * Not thread safe - OrderManagement calls it while holding stateLock.
+ */
+public class InFlightOrderTracker {
+    public interface ExpiryHandler {
+        void onExpired(long orderId, int symbolId, long sentNanos);
+    }
+
+    private static final int WHEEL_SIZE = 512;
+    private static final int TICKS_PER_TIMEOUT = WHEEL_SIZE / 2; // a deadline never laps the wheel
+    private static final long MIN_TICK_NANOS = 1_000_000;
+    private static final int NONE = -1;
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private final long timeoutNanos;
+    private final long tickNanos;
+    private final int[] wheel = new int[WHEEL_SIZE];
+    private long processedTick; // every bucket up to and including this tick has been expired
+
+    private final LongLongHashMap slotByOrderId;
+    private long[] orderIds;
+    private long[] sentNanos;
+    private long[] deadlines;
+    private int[] symbolIds;
+    private int[] buckets;
+    private int[] next; // wheel links, or the free list for unused slots
+    private int[] prev;
+    private int freeHead;
+
+    public InFlightOrderTracker(int expectedSize, long timeoutNanos) {
+        this.timeoutNanos = timeoutNanos;
+        this.tickNanos = Math.max(MIN_TICK_NANOS, timeoutNanos / TICKS_PER_TIMEOUT);
+        this.processedTick = Math.floorDiv(System.nanoTime(), tickNanos);
+        this.slotByOrderId = new LongLongHashMap(expectedSize, NONE);
+        Arrays.fill(wheel, NONE);
+        allocate(Math.max(expectedSize, 16));
+    }
+
+    // How often expire() needs to run to keep expiry within one tick
+    public long tickNanos() {
+        return tickNanos;
+    }
+
+    public void add(long orderId, int symbolId, long sentTime) {
+        int existing = indexOf(orderId);
+        if (existing != NONE) {
+            remove(existing);
+        }
+        if (freeHead == NONE) {
+            grow();
+        }
+        int slot = freeHead;
+        freeHead = next[slot];
+        orderIds[slot] = orderId;
+        symbolIds[slot] = symbolId;
+        sentNanos[slot] = sentTime;
+        slotByOrderId.put(orderId, slot);
+        if (timeoutNanos > 0) {
+            deadlines[slot] = sentTime + timeoutNanos;
+            link(slot);
+        } else {
+            deadlines[slot] = NO_DEADLINE;
+            next[slot] = NONE;
+            prev[slot] = NONE;
+        }
+    }
+
+    // Slot of the order, or -1 when it isn't in flight
+    public int indexOf(long orderId) {
+        return (int) slotByOrderId.get(orderId);
+    }
+
+    public long sentNanos(int slot) {
+        return sentNanos[slot];
+    }
+
+    public int symbolId(int slot) {
+        return symbolIds[slot];
+    }
+
+    public void remove(int slot) {
+        slotByOrderId.remove(orderIds[slot]);
+        if (deadlines[slot] != NO_DEADLINE) {
+            unlink(slot);
+        }
+        next[slot] = freeHead;
+        freeHead = slot;
+    }
+
+    public int size() {
+        return slotByOrderId.size();
+    }
+
+    // Visits every order in flight (same arguments as an expiry), leaving it tracked
+    public void forEach(ExpiryHandler visitor) {
+        slotByOrderId.forEach((orderId, slot) ->
+                visitor.onExpired(orderId, symbolIds[(int) slot], sentNanos[(int) slot]));
+    }
+
+    // Expires every order whose deadline has passed; returns how many
+    public int expire(long now, ExpiryHandler handler) {
+        // Only ticks that have fully elapsed, so everything in their buckets is due
+        long lastTick = Math.floorDiv(now, tickNanos) - 1;
+        long firstTick = Math.max(processedTick + 1, lastTick - WHEEL_SIZE + 1);
+        int expired = 0;
+        for (long tick = firstTick; tick <= lastTick; tick++) {
+            int slot = wheel[(int) (tick & (WHEEL_SIZE - 1))];
+            while (slot != NONE) {
+                int following = next[slot];
+                if (deadlines[slot] <= now) {
+                    long orderId = orderIds[slot];
+                    int symbolId = symbolIds[slot];
+                    long sent = sentNanos[slot];
+                    remove(slot);
+                    handler.onExpired(orderId, symbolId, sent);
+                    expired++;
+                }
+                slot = following;
+            }
+        }
+        if (lastTick > processedTick) {
+            processedTick = lastTick;
+        }
+        return expired;
+    }
+
+    private void link(int slot) {
+        // A deadline in a tick that was already swept goes into the next one
+        long tick = Math.max(Math.floorDiv(deadlines[slot], tickNanos), processedTick + 1);
+        int bucket = (int) (tick & (WHEEL_SIZE - 1));
+        buckets[slot] = bucket;
+        int head = wheel[bucket];
+        prev[slot] = NONE;
+        next[slot] = head;
+        if (head != NONE) {
+            prev[head] = slot;
+        }
+        wheel[bucket] = slot;
+    }
+
+    private void unlink(int slot) {
+        int before = prev[slot];
+        int after = next[slot];
+        if (before != NONE) {
+            next[before] = after;
+        } else {
+            wheel[buckets[slot]] = after;
+        }
+        if (after != NONE) {
+            prev[after] = before;
+        }
+    }
+
+    private void allocate(int capacity) {
+        orderIds = new long[capacity];
+        sentNanos = new long[capacity];
+        deadlines = new long[capacity];
+        symbolIds = new int[capacity];
+        buckets = new int[capacity];
+        next = new int[capacity];
+        prev = new int[capacity];
+        for (int i = 0; i < capacity - 1; i++) {
+            next[i] = i + 1;
+        }
+        next[capacity - 1] = NONE;
+        freeHead = 0;
+    }
+
+    private void grow() {
+        int oldCapacity = orderIds.length;
+        int capacity = oldCapacity << 1;
+        orderIds = Arrays.copyOf(orderIds, capacity);
+        sentNanos = Arrays.copyOf(sentNanos, capacity);
+        deadlines = Arrays.copyOf(deadlines, capacity);
+        symbolIds = Arrays.copyOf(symbolIds, capacity);
+        buckets = Arrays.copyOf(buckets, capacity);
+        next = Arrays.copyOf(next, capacity);
+        prev = Arrays.copyOf(prev, capacity);
+        for (int i = oldCapacity; i < capacity - 1; i++) {
+            next[i] = i + 1;
+        }
+        next[capacity - 1] = NONE;
+        freeHead = oldCapacity;
+    }
+}
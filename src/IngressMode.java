@@ -0,0 +1,3 @@
+public enum IngressMode {
+    Locked, RingBuffer
+}
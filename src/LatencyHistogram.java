@@ -0,0 +1,89 @@
+import java.util.Arrays;
+
+/*
+ * HDR-style log-linear latency histogram over nanosecond values.
+ * Values below 2^SUB_BUCKET_BITS are counted exactly; above that each
+ * power-of-two range is split into SUB_BUCKET_HALF (32) linear sub-buckets,
+ * so a bucket spans up to 1/32 of its values: reported percentiles (the top
+ * of their bucket) are within about 3% of the recorded value. Recording is
+ * a couple of shifts and an array increment - no allocation.
+ * Values above MAX_TRACKABLE_NANOS (~68 s) land in the top bucket, the
+ * exact max is tracked separately. Not thread safe.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT >> 1;
+    private static final int MAX_SHIFT = 30;
+    public static final long MAX_TRACKABLE_NANOS = ((long) SUB_BUCKET_COUNT << MAX_SHIFT) - 1;
+
+    private final long[] counts = new long[SUB_BUCKET_COUNT + MAX_SHIFT * SUB_BUCKET_HALF];
+    private long totalCount;
+    private long maxValue;
+
+    public void record(long valueNanos) {
+        long value = Math.max(0, valueNanos);
+        counts[indexFor(Math.min(value, MAX_TRACKABLE_NANOS))]++;
+        totalCount++;
+        if (value > maxValue) {
+            maxValue = value;
+        }
+    }
+
+    public long count() {
+        return totalCount;
+    }
+
+    public long max() {
+        return maxValue;
+    }
+
+    // Highest value equivalent to the given percentile (0-100), 0 if empty
+    public long valueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * totalCount));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(highestEquivalentValue(i), maxValue);
+            }
+        }
+        return maxValue;
+    }
+
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        maxValue = Math.max(maxValue, other.maxValue);
+    }
+
+    public void reset() {
+        Arrays.fill(counts, 0);
+        totalCount = 0;
+        maxValue = 0;
+    }
+
+    static int indexFor(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - (SUB_BUCKET_BITS - 1);
+        int subBucket = (int) (value >>> shift);
+        return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF + (subBucket - SUB_BUCKET_HALF);
+    }
+
+    static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int offset = index - SUB_BUCKET_COUNT;
+        int shift = offset / SUB_BUCKET_HALF + 1;
+        long subBucket = offset % SUB_BUCKET_HALF + SUB_BUCKET_HALF;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,46 @@
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/*
+ * Point-in-time view of response latencies, for monitoring.
+ * All values are nanoseconds between transmit and the exchange response.
+ */
+public class LatencySnapshot {
+    public static class Summary {
+        public final long count;
+        public final long p50;
+        public final long p99;
+        public final long p999;
+        public final long max;
+
+        Summary(LatencyHistogram histogram) {
+            this.count = histogram.count();
+            this.p50 = histogram.valueAtPercentile(50.0);
+            this.p99 = histogram.valueAtPercentile(99.0);
+            this.p999 = histogram.valueAtPercentile(99.9);
+            this.max = histogram.max();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d p50=%dns p99=%dns p99.9=%dns max=%dns", count, p50, p99, p999, max);
+        }
+    }
+
+    public final Summary overall;
+    public final Map<ResponseType, Summary> byResponseType;
+    public final Map<Integer, Summary> bySymbol;
+
+    LatencySnapshot(LatencyHistogram overall, Map<ResponseType, LatencyHistogram> byResponseType,
+                    Map<Integer, LatencyHistogram> bySymbol) {
+        this.overall = new Summary(overall);
+        Map<ResponseType, Summary> types = new EnumMap<>(ResponseType.class);
+        byResponseType.forEach((type, histogram) -> types.put(type, new Summary(histogram)));
+        this.byResponseType = Collections.unmodifiableMap(types);
+        Map<Integer, Summary> symbols = new TreeMap<>();
+        bySymbol.forEach((symbol, histogram) -> symbols.put(symbol, new Summary(histogram)));
+        this.bySymbol = Collections.unmodifiableMap(symbols);
+    }
+}
@@ -0,0 +1,69 @@
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * Response latency histograms broken down by ResponseType and by symbol.
+ * Per-symbol histograms sit in an array indexed by m_symbolId and are only
+ * created the first time a symbol is seen. Not thread safe - OrderManagement
+ * records and snapshots while holding stateLock.
+ */
+public class LatencyStats {
+    private final LatencyHistogram[] byResponseType = new LatencyHistogram[ResponseType.values().length];
+    private LatencyHistogram[] bySymbol = new LatencyHistogram[1024];
+
+    public LatencyStats() {
+        for (int i = 0; i < byResponseType.length; i++) {
+            byResponseType[i] = new LatencyHistogram();
+        }
+    }
+
+    public void record(ResponseType type, int symbolId, long latencyNanos) {
+        byResponseType[type.ordinal()].record(latencyNanos);
+        if (symbolId < 0) {
+            return;
+        }
+        if (symbolId >= bySymbol.length) {
+            bySymbol = Arrays.copyOf(bySymbol, Math.max(symbolId + 1, bySymbol.length * 2));
+        }
+        LatencyHistogram histogram = bySymbol[symbolId];
+        if (histogram == null) {
+            histogram = new LatencyHistogram();
+            bySymbol[symbolId] = histogram;
+        }
+        histogram.record(latencyNanos);
+    }
+
+    // Builds a snapshot and optionally clears the histograms (interval reporting)
+    public LatencySnapshot snapshot(boolean reset) {
+        LatencyHistogram overall = new LatencyHistogram();
+        Map<ResponseType, LatencyHistogram> types = new EnumMap<>(ResponseType.class);
+        for (ResponseType type : ResponseType.values()) {
+            LatencyHistogram histogram = byResponseType[type.ordinal()];
+            if (histogram.count() > 0) {
+                types.put(type, histogram);
+                overall.add(histogram);
+            }
+        }
+        Map<Integer, LatencyHistogram> symbols = new HashMap<>();
+        for (int symbolId = 0; symbolId < bySymbol.length; symbolId++) {
+            if (bySymbol[symbolId] != null && bySymbol[symbolId].count() > 0) {
+                symbols.put(symbolId, bySymbol[symbolId]);
+            }
+        }
+
+        LatencySnapshot snapshot = new LatencySnapshot(overall, types, symbols);
+        if (reset) {
+            for (LatencyHistogram histogram : byResponseType) {
+                histogram.reset();
+            }
+            for (LatencyHistogram histogram : bySymbol) {
+                if (histogram != null) {
+                    histogram.reset();
+                }
+            }
+        }
+        return snapshot;
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * Leaky bucket (as a meter, GCRA style).
+ * Orders are released strictly one per interval with no burst allowance,
+ * which gives the smoothest possible outbound flow.
+ */
+public class LeakyBucketThrottle implements OrderThrottle {
+    private final long intervalNanos;
+    private long nextAllowedNanos;
+
+    public LeakyBucketThrottle(int maxPerSecond) {
+        if (maxPerSecond <= 0) {
+            throw new IllegalArgumentException("Rate must be positive");
+        }
+        this.intervalNanos = (NANOS_PER_SECOND + maxPerSecond - 1) / maxPerSecond;
+        this.nextAllowedNanos = System.nanoTime();
+    }
+
+    @Override
+    public boolean tryAcquire(long nowNanos) {
+        if (!canAcquire(nowNanos)) {
+            return false;
+        }
+        nextAllowedNanos = nowNanos + intervalNanos;
+        return true;
+    }
+
+    @Override
+    public boolean canAcquire(long nowNanos) {
+        return nowNanos - nextAllowedNanos >= 0;
+    }
+}
@@ -0,0 +1,203 @@
+import java.util.Arrays;
+
+/*
+ * Open addressing long -> long map with linear probing.
+ * Keys and values live in two parallel primitive arrays, so there is no
+ * boxing and no per-entry object. Removal uses backward-shift deletion
+ * (no tombstones), which keeps probe chains short under heavy churn.
+ * Key 0 is stored out of line because 0 marks a free slot.
+ * Not thread safe.
+ */
+public class LongLongHashMap {
+    private static final long FREE_KEY = 0;
+    private static final double LOAD_FACTOR = 0.6;
+
+    public interface EntryVisitor {
+        void visit(long key, long value);
+    }
+
+    private final long missingValue;
+    private long[] keys;
+    private long[] values;
+    private int mask;
+    private int resizeThreshold;
+    private int size;
+
+    private boolean hasZeroKey;
+    private long zeroKeyValue;
+
+    public LongLongHashMap(int expectedSize, long missingValue) {
+        this.missingValue = missingValue;
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    public long missingValue() {
+        return missingValue;
+    }
+
+    public long get(long key) {
+        if (key == FREE_KEY) {
+            return hasZeroKey ? zeroKeyValue : missingValue;
+        }
+        int index = slot(key);
+        long existing;
+        while ((existing = keys[index]) != FREE_KEY) {
+            if (existing == key) {
+                return values[index];
+            }
+            index = (index + 1) & mask;
+        }
+        return missingValue;
+    }
+
+    public boolean containsKey(long key) {
+        if (key == FREE_KEY) {
+            return hasZeroKey;
+        }
+        int index = slot(key);
+        long existing;
+        while ((existing = keys[index]) != FREE_KEY) {
+            if (existing == key) {
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    // Returns the previous value, or missingValue if the key was absent
+    public long put(long key, long value) {
+        if (key == FREE_KEY) {
+            long previous = hasZeroKey ? zeroKeyValue : missingValue;
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            zeroKeyValue = value;
+            return previous;
+        }
+        int index = slot(key);
+        long existing;
+        while ((existing = keys[index]) != FREE_KEY) {
+            if (existing == key) {
+                long previous = values[index];
+                values[index] = value;
+                return previous;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = value;
+        if (++size > resizeThreshold) {
+            rehash(keys.length << 1);
+        }
+        return missingValue;
+    }
+
+    // Returns the removed value, or missingValue if the key was absent
+    public long remove(long key) {
+        if (key == FREE_KEY) {
+            if (!hasZeroKey) {
+                return missingValue;
+            }
+            hasZeroKey = false;
+            size--;
+            return zeroKeyValue;
+        }
+        int index = slot(key);
+        long existing;
+        while ((existing = keys[index]) != FREE_KEY) {
+            if (existing == key) {
+                long previous = values[index];
+                shiftBack(index);
+                size--;
+                return previous;
+            }
+            index = (index + 1) & mask;
+        }
+        return missingValue;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Visits every entry in table order; the map must not change meanwhile
+    public void forEach(EntryVisitor visitor) {
+        if (hasZeroKey) {
+            visitor.visit(FREE_KEY, zeroKeyValue);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE_KEY) {
+                visitor.visit(keys[i], values[i]);
+            }
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(keys, FREE_KEY);
+        hasZeroKey = false;
+        size = 0;
+    }
+
+    // Close the gap left at 'index' by moving later entries of the probe chain back
+    private void shiftBack(int index) {
+        int gap = index;
+        int next = (index + 1) & mask;
+        long key;
+        while ((key = keys[next]) != FREE_KEY) {
+            int home = slot(key);
+            // Move the entry unless its home slot lies cyclically in (gap, next]
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = key;
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = FREE_KEY;
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(newCapacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key != FREE_KEY) {
+                int index = slot(key);
+                while (keys[index] != FREE_KEY) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = key;
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private int slot(long key) {
+        return hash(key) & mask;
+    }
+
+    static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    static int tableSizeFor(int expectedSize) {
+        long needed = (long) Math.ceil(Math.max(expectedSize, 1) / LOAD_FACTOR) + 1;
+        int capacity = Integer.highestOneBit((int) Math.min(needed, 1 << 30));
+        return capacity < needed ? capacity << 1 : capacity;
+    }
+}
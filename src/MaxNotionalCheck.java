@@ -0,0 +1,37 @@
+import java.util.Arrays;
+
+/*
+ * Rejects orders whose notional (price x qty) exceeds the symbol's limit.
+ * Limits are in the same fixed-point units as the price, i.e. notional
+ * times 10^scale. Compared as qty <= limit / price, which is exact for
+ * positive integers and can't overflow; non-positive prices are left to
+ * PriceBandCheck.
+ */
+public class MaxNotionalCheck implements PreTradeCheck {
+    private final long[] maxNotional;
+
+    public MaxNotionalCheck(int symbolCapacity, long defaultMaxNotional) {
+        this.maxNotional = new long[symbolCapacity];
+        Arrays.fill(maxNotional, defaultMaxNotional);
+    }
+
+    public MaxNotionalCheck set(int symbolId, long limit) {
+        maxNotional[symbolId] = limit;
+        return this;
+    }
+
+    @Override
+    public int symbolCapacity() {
+        return maxNotional.length;
+    }
+
+    @Override
+    public String name() {
+        return "MaxNotional";
+    }
+
+    @Override
+    public boolean accept(OrderRequest order, long price) {
+        return price <= 0 || order.m_qty <= maxNotional[order.m_symbolId] / price;
+    }
+}
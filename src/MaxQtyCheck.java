@@ -0,0 +1,34 @@
+import java.util.Arrays;
+
+/*
+ * Rejects orders whose quantity is not positive or exceeds the symbol's
+ * maximum order size.
+ */
+public class MaxQtyCheck implements PreTradeCheck {
+    private final long[] maxQty;
+
+    public MaxQtyCheck(int symbolCapacity, long defaultMaxQty) {
+        this.maxQty = new long[symbolCapacity];
+        Arrays.fill(maxQty, defaultMaxQty);
+    }
+
+    public MaxQtyCheck set(int symbolId, long limit) {
+        maxQty[symbolId] = limit;
+        return this;
+    }
+
+    @Override
+    public int symbolCapacity() {
+        return maxQty.length;
+    }
+
+    @Override
+    public String name() {
+        return "MaxQty";
+    }
+
+    @Override
+    public boolean accept(OrderRequest order, long price) {
+        return order.m_qty > 0 && order.m_qty <= maxQty[order.m_symbolId];
+    }
+}
@@ -0,0 +1,88 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/*
+ * Fixed-size, thread-safe pool of reusable message objects.
+ * Backed by a bounded lock-free MPMC array queue (Vyukov style: each slot
+ * carries a sequence number telling claimers/releasers whose turn it is),
+ * so claim and release never allocate and never block.
+ * If the pool runs dry, claim falls back to allocating and the miss is
+ * counted - a non-zero miss count means the pool is undersized.
+ */
+public class MessagePool<T> {
+    private final AtomicReferenceArray<T> slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong claimPosition = new AtomicLong(0);
+    private final AtomicLong releasePosition = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+    private final Supplier<T> factory;
+
+    public MessagePool(int capacity, Supplier<T> factory) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        this.factory = factory;
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+        for (int i = 0; i < capacity; i++) {
+            release(factory.get());
+        }
+    }
+
+    public T claim() {
+        long position;
+        int index;
+        while (true) {
+            position = claimPosition.get();
+            index = (int) position & mask;
+            long diff = sequences.get(index) - (position + 1);
+            if (diff == 0) {
+                if (claimPosition.compareAndSet(position, position + 1)) {
+                    break;
+                }
+            } else if (diff < 0) {
+                misses.incrementAndGet();
+                return factory.get();
+            }
+        }
+        T item = slots.get(index);
+        slots.lazySet(index, null);
+        sequences.lazySet(index, position + mask + 1);
+        return item;
+    }
+
+    // Returns the object to the pool; silently dropped if the pool is already full
+    public void release(T item) {
+        long position;
+        int index;
+        while (true) {
+            position = releasePosition.get();
+            index = (int) position & mask;
+            long diff = sequences.get(index) - position;
+            if (diff == 0) {
+                if (releasePosition.compareAndSet(position, position + 1)) {
+                    break;
+                }
+            } else if (diff < 0) {
+                return;
+            }
+        }
+        slots.lazySet(index, item);
+        sequences.lazySet(index, position + 1);
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,193 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/*
+ * Queued orders stored column by column in off-heap memory, one dense slot
+ * per order. Each field (orderId, symbolId, price, fixed-point price, qty,
+ * side, state) is its own direct buffer indexed by slot, alongside the
+ * next/prev links that thread slots into SymbolOrderQueues' per-symbol
+ * FIFOs (next doubles as the free list). A queued order is copied in and
+ * its OrderRequest handed back to the pool, so the backlog is a handful of
+ * primitive columns rather than objects and list nodes: millions of queued
+ * orders cost the GC nothing and walking a queue touches a few tightly
+ * packed arrays.
+ *
+ * Only New orders are ever queued, so the request type is not stored.
+ * Columns double in size when full. Not thread safe - guarded by
+ * OrderManagement.stateLock.
+ */
+public class OffHeapOrderStore {
+    public static final int NONE = -1;
+    public static final byte STATE_FREE = 0;
+    public static final byte STATE_QUEUED = 1;
+
+    private ByteBuffer orderIds;
+    private ByteBuffer symbolIds;
+    private ByteBuffer prices;
+    private ByteBuffer fixedPrices;
+    private ByteBuffer qtys;
+    private ByteBuffer sides;
+    private ByteBuffer states;
+    private ByteBuffer next; // queue link, or the free list for unused slots
+    private ByteBuffer prev;
+    private int capacity;
+    private int freeHead = NONE;
+    private int size;
+
+    public OffHeapOrderStore(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 16);
+        orderIds = column(capacity, Long.BYTES);
+        symbolIds = column(capacity, Integer.BYTES);
+        prices = column(capacity, Double.BYTES);
+        fixedPrices = column(capacity, Long.BYTES);
+        qtys = column(capacity, Long.BYTES);
+        sides = column(capacity, Character.BYTES);
+        states = column(capacity, Byte.BYTES);
+        next = column(capacity, Integer.BYTES);
+        prev = column(capacity, Integer.BYTES);
+        addFreeSlots(0, capacity);
+    }
+
+    // Copies the order into a free slot (unlinked) and returns the slot
+    public int allocate(OrderRequest order) {
+        if (freeHead == NONE) {
+            grow();
+        }
+        int slot = freeHead;
+        freeHead = next(slot);
+        orderIds.putLong(slot * Long.BYTES, order.m_orderId);
+        symbolIds.putInt(slot * Integer.BYTES, order.m_symbolId);
+        prices.putDouble(slot * Double.BYTES, order.m_price);
+        fixedPrices.putLong(slot * Long.BYTES, order.m_fixedPrice);
+        qtys.putLong(slot * Long.BYTES, order.m_qty);
+        sides.putChar(slot * Character.BYTES, order.m_side);
+        states.put(slot, STATE_QUEUED);
+        setNext(slot, NONE);
+        setPrev(slot, NONE);
+        size++;
+        return slot;
+    }
+
+    // Slot must be unlinked from any queue
+    public void free(int slot) {
+        states.put(slot, STATE_FREE);
+        setNext(slot, freeHead);
+        freeHead = slot;
+        size--;
+    }
+
+    public void copyTo(int slot, OrderRequest order) {
+        order.m_orderId = orderId(slot);
+        order.m_symbolId = symbolId(slot);
+        order.m_price = price(slot);
+        order.m_fixedPrice = fixedPrice(slot);
+        order.m_qty = qty(slot);
+        order.m_side = side(slot);
+        order.m_requestType = RequestType.New;
+    }
+
+    public long orderId(int slot) {
+        return orderIds.getLong(slot * Long.BYTES);
+    }
+
+    public int symbolId(int slot) {
+        return symbolIds.getInt(slot * Integer.BYTES);
+    }
+
+    public double price(int slot) {
+        return prices.getDouble(slot * Double.BYTES);
+    }
+
+    public void setPrice(int slot, double price) {
+        prices.putDouble(slot * Double.BYTES, price);
+    }
+
+    public long fixedPrice(int slot) {
+        return fixedPrices.getLong(slot * Long.BYTES);
+    }
+
+    public void setFixedPrice(int slot, long fixedPrice) {
+        fixedPrices.putLong(slot * Long.BYTES, fixedPrice);
+    }
+
+    public long qty(int slot) {
+        return qtys.getLong(slot * Long.BYTES);
+    }
+
+    public void setQty(int slot, long qty) {
+        qtys.putLong(slot * Long.BYTES, qty);
+    }
+
+    public char side(int slot) {
+        return sides.getChar(slot * Character.BYTES);
+    }
+
+    public byte state(int slot) {
+        return states.get(slot);
+    }
+
+    public int next(int slot) {
+        return next.getInt(slot * Integer.BYTES);
+    }
+
+    public void setNext(int slot, int value) {
+        next.putInt(slot * Integer.BYTES, value);
+    }
+
+    public int prev(int slot) {
+        return prev.getInt(slot * Integer.BYTES);
+    }
+
+    public void setPrev(int slot, int value) {
+        prev.putInt(slot * Integer.BYTES, value);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    // Off-heap bytes held by the columns
+    public long footprintBytes() {
+        return (long) capacity * (Long.BYTES * 3 + Integer.BYTES * 3 + Double.BYTES + Character.BYTES + Byte.BYTES);
+    }
+
+    private void grow() {
+        int newCapacity = capacity << 1;
+        if (newCapacity <= 0 || (long) newCapacity * Long.BYTES > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Order store is full: " + capacity + " orders");
+        }
+        orderIds = copyColumn(orderIds, newCapacity, Long.BYTES);
+        symbolIds = copyColumn(symbolIds, newCapacity, Integer.BYTES);
+        prices = copyColumn(prices, newCapacity, Double.BYTES);
+        fixedPrices = copyColumn(fixedPrices, newCapacity, Long.BYTES);
+        qtys = copyColumn(qtys, newCapacity, Long.BYTES);
+        sides = copyColumn(sides, newCapacity, Character.BYTES);
+        states = copyColumn(states, newCapacity, Byte.BYTES);
+        next = copyColumn(next, newCapacity, Integer.BYTES);
+        prev = copyColumn(prev, newCapacity, Integer.BYTES);
+        addFreeSlots(capacity, newCapacity);
+    }
+
+    // Links slots [from, to) onto the free list
+    private void addFreeSlots(int from, int to) {
+        for (int slot = to - 1; slot >= from; slot--) {
+            setNext(slot, freeHead);
+            freeHead = slot;
+        }
+        capacity = to;
+    }
+
+    private static ByteBuffer column(int capacity, int width) {
+        return ByteBuffer.allocateDirect(capacity * width).order(ByteOrder.nativeOrder());
+    }
+
+    private static ByteBuffer copyColumn(ByteBuffer old, int newCapacity, int width) {
+        ByteBuffer column = column(newCapacity, width);
+        column.put(0, old, 0, old.capacity());
+        return column;
+    }
+}
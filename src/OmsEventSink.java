@@ -0,0 +1,27 @@
+/*
+ * Receives everything the OMS used to print: orders sent, rejections,
+ * exchange responses and session logon/logout, plus in-flight timeouts.
+ * Implementations are called from the onData caller, the ingress thread and
+ * the timer thread, so they must be thread safe, and they sit on the hot
+ * path, so they must not block or allocate. Messages passed in may be
+ * recycled as soon as the call returns - copy what you need.
+ */
+public interface OmsEventSink {
+    void onOrderSent(OrderRequest order);
+
+    void onOrderRejected(OrderRequest order, RejectReason reason);
+
+    // latencyNanos is the time from transmit to this response
+    void onResponse(OrderResponse response, long latencyNanos);
+
+    // No response arrived within the in-flight timeout; ageNanos is the time since transmit
+    void onOrderTimeout(long orderId, int symbolId, long ageNanos);
+
+    void onLogon();
+
+    void onLogout();
+
+    // Flush and release resources; called from OrderManagement.stop()
+    default void close() {
+    }
+}
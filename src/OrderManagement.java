@@ -1,161 +1,1109 @@
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalTime;
-import java.util.*;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantLock;
 
 /*
  * My Order Management System
  * --------------------------
  * This system handles order processing with:
- * - Configurable trading hours (sends logon/logout messages)
- * - Rate limiting (orders per second)
- * - Order queue with modify/cancel support
- * - Response tracking with latency measurement
+ * - Configurable trading hours (sends logon/logout messages) - a daily
+ *   window or a TradingSchedule with several sessions, overnight sessions
+ *   and holidays; a timer fires exactly at each open/close
+ * - Rate limiting (orders per second) via a pluggable OrderThrottle, globally
+ *   and optionally per symbol
+ * - Per-symbol order queues with modify/cancel support and a round-robin
+ *   drain, so a burst on one symbol doesn't hold up the others
+ * - Response tracking with nanosecond latency histograms (per ResponseType
+ *   and per symbol, see latencySnapshot)
+ * - Orders never answered by the exchange are expired after
+ *   config.inFlightTimeoutMillis (timing wheel in InFlightOrderTracker) and
+ *   reported through OmsEventSink.onOrderTimeout
+ * - Event output through a pluggable OmsEventSink (async binary journal by
+ *   default - one file per instance in config.eventJournalDirectory, kept
+ *   after stop() - or ConsoleEventSink for debugging)
+ * - Optional crash recovery from a memory-mapped OrderStateJournal
+ * - Optional non-blocking TCP ExchangeSession (config.exchangeAddress);
+ *   logon/logout follow the trading window, responses are fed back in
+ *   through onData(ByteBuffer, int)
  *
  * Design Notes:
- * I used ScheduledExecutorService for periodic tasks because it's efficient
- * for timer-based operations. The lock ensures thread safety for shared resources.
- * The queue uses both LinkedList (FIFO) and HashMap (for quick lookups) - this
- * combo gives good performance for our needs.
+ * Periodic tasks run on a TimingWheelScheduler shared by every instance in
+ * the JVM (one ticker thread in total rather than a thread per instance), so
+ * they only take stateLock briefly. ExecutionMode.VirtualThreads instead
+ * gives each instance its own drain and trading-window loops on virtual
+ * threads (JDK 21+), for hosting one instance per client session.
+ * The lock ensures thread safety for shared resources.
+ * Queued orders are copied into an off-heap columnar store (see
+ * SymbolOrderQueues) and one map goes from orderId to its store slot, so
+ * modify and cancel of a queued order are both O(1) no matter how deep the
+ * backlog is, and a backlog of millions adds nothing for the GC to trace. The id-keyed maps
+ * are primitive open-addressing maps, so orderIds and timestamps are never
+ * boxed.
+ *
+ * Ingress can run in two modes (chosen at construction):
+ * - Locked: callers of onData take stateLock themselves (original behaviour)
+ * - RingBuffer: callers publish into a lock-free MPSC ring and one ingress
+ *   thread applies New/Modify/Cancel, so callers never block on stateLock.
+ *   The ring holds the request itself until then, so a caller must not
+ *   reuse or change a request after passing it to onData, pooled or not.
+ *
+ * The throttle refills continuously (nanoTime based) and the queue is drained
+ * several times per inter-order gap rather than once a second, so a queued order waits
+ * roughly until the next permit instead of until the next second boundary.
+ *
+ * Modify/Cancel of an order that was already sent goes to the exchange as
+ * its own message through a priority lane: amends take throttle permits
+ * ahead of every queued New, so cancels get out within a permit interval
+ * however deep the New backlog is. Each order has at most one replace
+ * outstanding; later Modifies are coalesced into a single waiting one.
+ *
+ * Transmit batching (optional, config.transmitBatchSize > 0):
+ * Outbound orders are collected into a buffer and handed to transmitBatch
+ * when it fills up, at the end of each drain/batch, or once the oldest one
+ * has waited transmitFlushMicros - so bursts cost one exchange write per
+ * batch rather than one per order. Send time is taken at flush.
+ *
+ * Message pooling (optional, config.messagePoolSize > 0):
+ * OrderRequest/OrderResponse objects come from pools owned by this class.
+ * Callers get them from claimRequest()/claimResponse(), fill in every field
+ * and hand them to onData - from then on the OMS owns the object and will
+ * recycle it once it has been sent, applied or rejected. Callers must not
+ * touch a message after passing it to onData, and transmitOrder overrides
+ * must not keep a reference to the request. With pooling off nothing is
+ * recycled, but the OMS may still hold on to a request (RingBuffer ingress,
+ * a queued or held amend), so allocate a fresh one for every onData.
  *
  * Important: This is production-grade code but simplified for the assignment scope.
  */
 
 public class OrderManagement {
     // Config settings
-    private final LocalTime tradingStart;
-    private final LocalTime tradingEnd;
+    private final TradingSchedule tradingSchedule;
     private final int maxOrdersPerSecond;
+    private final IngressMode ingressMode;
 
     // Runtime state
     private volatile boolean tradingActive = false;
-    private final AtomicInteger ordersSentThisSecond = new AtomicInteger(0);
-    private final Queue<OrderRequest> pendingOrders = new LinkedList<>();
-    private final Map<Long, OrderRequest> queuedOrderLookup = new HashMap<>();
-    private final Map<Long, Long> sentOrderTimestamps = new ConcurrentHashMap<>();
+    private final OrderThrottle throttle;
+    private final SymbolOrderQueues pendingOrders;
+    private final PreTradeRiskChain riskChecks; // null = none
+    private final boolean fixedPointPrices;
+    private final PriceScales priceScales; // null = double prices
+    private final LongLongHashMap queuedOrderLookup; // orderId -> slot in pendingOrders
+    private final PendingOrderQueue amendLane = new PendingOrderQueue(); // Modify/Cancel of live orders
+    private final LongObjectHashMap<PendingOrderQueue.Node> queuedAmends; // orderId -> its node in amendLane
+    private final LongObjectHashMap<OrderRequest> heldReplaces; // Modify waiting for the outstanding replace
+    private final InFlightOrderTracker inFlightReplaces; // Modify sent, awaiting its own response
+    // orderId -> symbolId | LIVE_SELL for orders sent and not yet cancelled, rejected, filled or timed out
+    private final LongLongHashMap liveOrders;
+    // orderId -> 1 for a New handed back unsent after its Cancel was accepted: that Cancel restores nothing
+    private final LongLongHashMap cancelledUnsentNews;
+    private long coalescedAmends; // guarded by stateLock
+    private final OrderRequest amendedOrder = new OrderRequest(); // risk view of a Modify, guarded by stateLock
+    private final InFlightOrderTracker inFlightOrders; // sent, awaiting a response; expires lost ones
+    private final LatencyStats latencyStats = new LatencyStats();
+    private long timedOutOrders; // guarded by stateLock
     private final Lock stateLock = new ReentrantLock();
-    private final ScheduledExecutorService timer = Executors.newScheduledThreadPool(1);
+    private final TimingWheelScheduler scheduler; // usually shared with other instances; null with virtual threads
+    private final List<TimingWheelScheduler.Timeout> timers = new ArrayList<>();
+    private TimingWheelScheduler.Timeout windowTimer; // guarded by timers
+    private boolean timersStopped; // guarded by timers
+
+    // ExecutionMode.VirtualThreads: this instance's own timer loops
+    private final List<Thread> sessionThreads = new ArrayList<>();
+    private volatile boolean sessionThreadsRunning;
+    private Thread drainThread;
+    private boolean drainIdle; // guarded by stateLock; the drain loop is parked until woken
+    private final OmsEventSink eventSink;
+    private final ExchangeSession exchangeSession; // null when not connected to an exchange
+
+    // Ring buffer ingress (only used in IngressMode.RingBuffer)
+    private static final int INGRESS_RING_CAPACITY = 1 << 16;
+    private static final int INGRESS_BATCH_SIZE = 256;
+    private static final int INGRESS_SPIN_TRIES = 1000;
+    private final OrderRingBuffer ingressRing;
+    private final Thread ingressThread;
+    private volatile boolean ingressRunning;
+
+    // Outbound transmit batching (buffer is null when batching is off)
+    private final OrderRequest[] transmitBuffer;
+    private final long transmitFlushNanos;
+    private int transmitCount;
+    private long oldestBufferedNanos;
+
+    // Write-ahead journal for recovery (null when persistence is off)
+    private final OrderStateJournal orderJournal;
+
+    // Message pools (null when pooling is off)
+    private final MessagePool<OrderRequest> requestPool;
+    private final MessagePool<OrderResponse> responsePool;
+
+    private static final long MIN_DRAIN_PERIOD_NANOS = 100_000;
+    private static final long MAX_TRANSITION_WAIT_NANOS = TimeUnit.HOURS.toNanos(1);
+    private static final int DRAIN_TICKS_PER_PERMIT = 4;
+    private static final long NO_LATENCY = Long.MIN_VALUE;
+    private static final long NOT_LIVE = -1;
+    private static final long LIVE_SELL = 1L << 32; // flag above the symbolId in liveOrders
+    private static final int AMEND_MAP_SIZE = 1024;
+    private static final AtomicInteger instanceCounter = new AtomicInteger(0);
+
+    private static OrderManagementConfig configWithIngress(LocalTime start, LocalTime end, int maxPerSecond,
+                                                           IngressMode mode) {
+        OrderManagementConfig config = new OrderManagementConfig(start, end, maxPerSecond);
+        config.ingressMode = mode;
+        return config;
+    }
 
     public OrderManagement(LocalTime start, LocalTime end, int maxPerSecond) {
-        this.tradingStart = start;
-        this.tradingEnd = end;
-        this.maxOrdersPerSecond = maxPerSecond;
+        this(start, end, maxPerSecond, IngressMode.Locked);
+    }
+
+    public OrderManagement(LocalTime start, LocalTime end, int maxPerSecond, IngressMode mode) {
+        this(configWithIngress(start, end, maxPerSecond, mode));
+    }
+
+    public OrderManagement(OrderManagementConfig config) {
+        if (config.maxOrdersPerSecond <= 0) {
+            // Also sets the drain period, even when the throttle itself is shared
+            throw new IllegalArgumentException("maxOrdersPerSecond must be positive: " + config.maxOrdersPerSecond);
+        }
+        // Symbols in range are indexed straight into these tables under stateLock (by the
+        // ingress thread in RingBuffer mode), so they must cover every one of them
+        if (config.priceScales != null && config.priceScales.symbolCapacity() < config.symbolCapacity) {
+            throw new IllegalArgumentException("PriceScales covers " + config.priceScales.symbolCapacity()
+                    + " symbols, symbolCapacity is " + config.symbolCapacity);
+        }
+        if (config.preTradeChecks != null && config.preTradeChecks.symbolCapacity() < config.symbolCapacity) {
+            throw new IllegalArgumentException("Pre-trade checks cover " + config.preTradeChecks.symbolCapacity()
+                    + " symbols, symbolCapacity is " + config.symbolCapacity);
+        }
+        this.tradingSchedule = config.tradingSchedule != null ? config.tradingSchedule
+                : TradingSchedule.daily(config.tradingStart, config.tradingEnd);
+        this.maxOrdersPerSecond = config.maxOrdersPerSecond;
+        this.ingressMode = config.ingressMode;
+        this.eventSink = config.eventSink != null ? config.eventSink : defaultJournal(config);
+        if (config.executionMode == ExecutionMode.VirtualThreads) {
+            this.scheduler = null;
+        } else {
+            this.scheduler = config.scheduler != null ? config.scheduler : TimingWheelScheduler.shared();
+        }
+        this.riskChecks = config.preTradeChecks;
+        this.fixedPointPrices = config.priceScales != null;
+        this.priceScales = config.priceScales;
+        if (riskChecks != null && fixedPointPrices && riskChecks.priceScales() != config.priceScales) {
+            throw new IllegalArgumentException("Pre-trade checks must use the config's PriceScales");
+        }
+        this.pendingOrders = new SymbolOrderQueues(config.throttleType, config.maxOrdersPerSecondPerSymbol,
+                config.symbolThrottleBurst, config.symbolCapacity, config.orderStoreInitialCapacity);
+        this.queuedOrderLookup = new LongLongHashMap(config.expectedLiveOrders, OffHeapOrderStore.NONE);
+        this.queuedAmends = new LongObjectHashMap<>(AMEND_MAP_SIZE);
+        this.heldReplaces = new LongObjectHashMap<>(AMEND_MAP_SIZE);
+        this.liveOrders = new LongLongHashMap(config.expectedLiveOrders, NOT_LIVE);
+        this.cancelledUnsentNews = new LongLongHashMap(AMEND_MAP_SIZE, NOT_LIVE);
+        this.inFlightOrders = new InFlightOrderTracker(config.expectedLiveOrders,
+                TimeUnit.MILLISECONDS.toNanos(config.inFlightTimeoutMillis));
+        this.inFlightReplaces = new InFlightOrderTracker(AMEND_MAP_SIZE,
+                TimeUnit.MILLISECONDS.toNanos(config.inFlightTimeoutMillis));
+
+        if (config.messagePoolSize > 0) {
+            requestPool = new MessagePool<>(config.messagePoolSize, OrderRequest::new);
+            responsePool = new MessagePool<>(config.messagePoolSize, OrderResponse::new);
+        } else {
+            requestPool = null;
+            responsePool = null;
+        }
+
+        transmitBuffer = config.transmitBatchSize > 0 ? new OrderRequest[config.transmitBatchSize] : null;
+        transmitFlushNanos = TimeUnit.MICROSECONDS.toNanos(config.transmitFlushMicros);
+
+        if (config.orderJournalPath != null) {
+            orderJournal = new OrderStateJournal(config.orderJournalPath, config.orderJournalInitialRecords,
+                    fixedPointPrices);
+            recoverState();
+            // From here on a full journal is compacted down to the live state;
+            // starting with a checkpoint drops the previous run's history
+            orderJournal.setCheckpointer(this::writeCheckpoint);
+            orderJournal.checkpoint();
+        } else {
+            orderJournal = null;
+        }
+
+        if (config.globalThrottle != null) {
+            this.throttle = config.globalThrottle;
+        } else {
+            int burst = config.throttleBurst > 0 ? config.throttleBurst : maxOrdersPerSecond;
+            this.throttle = OrderThrottle.create(config.throttleType, maxOrdersPerSecond, burst);
+        }
+
+        if (ingressMode == IngressMode.RingBuffer) {
+            ingressRing = new OrderRingBuffer(INGRESS_RING_CAPACITY);
+            ingressRunning = true;
+            ingressThread = new Thread(this::runIngressLoop, "oms-ingress");
+            ingressThread.setDaemon(true);
+            ingressThread.start();
+        } else {
+            ingressRing = null;
+            ingressThread = null;
+        }
+
+        if (config.exchangeAddress != null) {
+            exchangeSession = new ExchangeSession(config.exchangeAddress, config.heartbeatIntervalMillis,
+                    config.priceScales);
+            exchangeSession.start(this);
+        } else {
+            exchangeSession = null;
+        }
 
         // Initial check for trading window
         verifyTradingWindow();
 
-        // Setup periodic tasks
-        timer.scheduleAtFixedRate(this::processQueuedOrders, 0, 1, TimeUnit.SECONDS);
-        timer.scheduleAtFixedRate(this::verifyTradingWindow, 0, 1, TimeUnit.MINUTES);
+        // Setup periodic tasks - drain several times per permit interval so a
+        // tick landing just before a token is earned doesn't cost a whole interval
+        long permitIntervalNanos = OrderThrottle.NANOS_PER_SECOND / maxOrdersPerSecond;
+        long drainPeriodNanos = Math.max(MIN_DRAIN_PERIOD_NANOS, permitIntervalNanos / DRAIN_TICKS_PER_PERMIT);
+        long expiryPeriodNanos = config.inFlightTimeoutMillis > 0 ? inFlightOrders.tickNanos() : 0;
+        if (scheduler == null) {
+            startSessionThreads(drainPeriodNanos, expiryPeriodNanos);
+            return;
+        }
+        timers.add(scheduler.scheduleAtFixedRate(this::processQueuedOrders, 0, drainPeriodNanos,
+                TimeUnit.NANOSECONDS));
+        scheduleTradingWindowTransition();
+        if (expiryPeriodNanos > 0) {
+            timers.add(scheduler.scheduleAtFixedRate(this::expireInFlightOrders, expiryPeriodNanos,
+                    expiryPeriodNanos, TimeUnit.NANOSECONDS));
+        }
+        if (transmitBuffer != null) {
+            timers.add(scheduler.scheduleAtFixedRate(this::flushDueTransmits, transmitFlushNanos,
+                    transmitFlushNanos, TimeUnit.NANOSECONDS));
+        }
+    }
+
+    // Virtual threads block on stateLock and sleep without holding a carrier
+    // thread, so every instance can afford its own loops
+    private void startSessionThreads(long drainPeriodNanos, long expiryPeriodNanos) {
+        long drainSleepNanos = transmitBuffer != null
+                ? Math.min(drainPeriodNanos, transmitFlushNanos) : drainPeriodNanos;
+        int id = instanceCounter.incrementAndGet();
+        sessionThreadsRunning = true;
+        drainThread = VirtualThreads.newThread("oms-drain-" + id,
+                () -> runDrainLoop(drainSleepNanos, expiryPeriodNanos));
+        sessionThreads.add(drainThread);
+        sessionThreads.add(VirtualThreads.newThread("oms-trading-window-" + id, this::runTradingWindowLoop));
+        for (Thread thread : sessionThreads) {
+            thread.start();
+        }
+    }
+
+    // Drains the queue (which also flushes buffered transmits) and expires lost
+    // orders. Polls only while something is queued or buffered; otherwise it
+    // parks until wakeDrainLoop (or the next expiry tick), so idle sessions
+    // cost nothing.
+    private void runDrainLoop(long drainSleepNanos, long expiryPeriodNanos) {
+        long nextExpiry = System.nanoTime() + expiryPeriodNanos;
+        boolean idle = false;
+        while (sessionThreadsRunning) {
+            if (!idle) {
+                LockSupport.parkNanos(drainSleepNanos);
+            } else if (expiryPeriodNanos > 0) {
+                LockSupport.parkNanos(Math.max(0, nextExpiry - System.nanoTime()));
+            } else {
+                LockSupport.park();
+            }
+            processQueuedOrders();
+            if (expiryPeriodNanos > 0 && System.nanoTime() - nextExpiry >= 0) {
+                expireInFlightOrders();
+                nextExpiry += expiryPeriodNanos;
+            }
+            idle = enterDrainIdle();
+        }
+    }
+
+    private boolean enterDrainIdle() {
+        stateLock.lock();
+        try {
+            drainIdle = pendingOrders.size() == 0 && amendLane.isEmpty() && transmitCount == 0;
+            return drainIdle;
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
+    // Caller must hold stateLock. Called when work shows up for the drain loop.
+    private void wakeDrainLoop() {
+        if (drainIdle) {
+            drainIdle = false;
+            LockSupport.unpark(drainThread);
+        }
+    }
+
+    private void runTradingWindowLoop() {
+        while (sessionThreadsRunning) {
+            LockSupport.parkNanos(nanosUntilTradingWindowTransition());
+            if (sessionThreadsRunning) {
+                verifyTradingWindow();
+            }
+        }
+    }
+
+    // One-shot timer for the next open/close; each firing arms the next one
+    private void scheduleTradingWindowTransition() {
+        synchronized (timers) {
+            if (!timersStopped) {
+                windowTimer = scheduler.schedule(this::onTradingWindowTransition,
+                        nanosUntilTradingWindowTransition(), TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private void onTradingWindowTransition() {
+        verifyTradingWindow();
+        scheduleTradingWindowTransition();
+    }
+
+    // Capped so a wall-clock step (the timers run on nanoTime) is noticed within the hour
+    private long nanosUntilTradingWindowTransition() {
+        Instant now = Instant.now();
+        Instant next = tradingSchedule.nextTransition(now);
+        if (next == null) {
+            return MAX_TRANSITION_WAIT_NANOS;
+        }
+        return Math.min(MAX_TRANSITION_WAIT_NANOS, Math.max(0, Duration.between(now, next).toNanos()));
+    }
+
+    // Without an explicit path each instance gets its own file in
+    // eventJournalDirectory. The file outlives stop() (read it with
+    // BinaryEventJournal.dump), so where it went is printed once at startup.
+    private static OmsEventSink defaultJournal(OrderManagementConfig config) {
+        Path file = config.eventJournalPath;
+        if (file == null) {
+            file = config.eventJournalDirectory.resolve("oms-events-"
+                    + ProcessHandle.current().pid() + "-" + instanceCounter.incrementAndGet() + ".bin");
+            System.out.println("Event journal: " + file);
+        }
+        return new BinaryEventJournal(file, config.eventJournalCapacity);
+    }
+
+    // Pooled message access - with pooling off these just allocate
+    public OrderRequest claimRequest() {
+        return requestPool != null ? requestPool.claim() : new OrderRequest();
+    }
+
+    public OrderResponse claimResponse() {
+        return responsePool != null ? responsePool.claim() : new OrderResponse();
+    }
+
+    // Number of claims that had to allocate because a pool was empty
+    public long poolMisses() {
+        if (requestPool == null) {
+            return 0;
+        }
+        return requestPool.misses() + responsePool.misses();
+    }
+
+    private void recycle(OrderRequest order) {
+        if (requestPool != null) {
+            requestPool.release(order);
+        }
+    }
+
+    private void recycle(OrderResponse response) {
+        if (responsePool != null) {
+            responsePool.release(response);
+        }
     }
 
     // Handle incoming order requests
     public void onData(OrderRequest order) {
-        if (!tradingActive) {
-            System.out.println("[Rejected] Order outside trading hours");
+        boolean active = tradingActive;
+        if (!active || ingressMode == IngressMode.RingBuffer) {
+            handOff(order, active);
             return;
         }
 
         stateLock.lock();
         try {
-            switch (order.m_requestType) {
+            applyRequest(order);
+            flushTransmitsIfDue();
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
+    // Entry point for binary messages (see WireFormat): decodes the request or
+    // response at offset into a claimed message and handles it. With pooling
+    // on this allocates nothing. Returns the encoded length, or -1 if the
+    // template is not one we understand.
+    public int onData(ByteBuffer buffer, int offset) {
+        switch (WireFormat.templateId(buffer, offset)) {
+            case WireFormat.ORDER_REQUEST_TEMPLATE_ID:
+                OrderRequest order = claimRequest();
+                int requestLength = OrderRequestFlyweight.decode(buffer, offset, order, priceScales);
+                if (requestLength == OrderRequestFlyweight.INVALID_PRICE) {
+                    eventSink.onOrderRejected(order, RejectReason.InvalidPrice);
+                    recycle(order);
+                    return OrderRequestFlyweight.ENCODED_LENGTH;
+                }
+                onData(order);
+                return requestLength;
+            case WireFormat.ORDER_RESPONSE_TEMPLATE_ID:
+                OrderResponse response = claimResponse();
+                int responseLength = OrderResponseFlyweight.decode(buffer, offset, response);
+                onData(response);
+                return responseLength;
+            default:
+                return -1;
+        }
+    }
+
+    // Batch entry point for gateways that receive orders in network batches.
+    // The trading window is checked and stateLock taken once for the whole
+    // batch; requests are applied in order and outcomes[i] is set for
+    // orders[offset + i]. The caller owns (and can reuse) the outcomes array.
+    // Returns the number of requests processed.
+    public int onData(OrderRequest[] orders, int offset, int count, RequestOutcome[] outcomes) {
+        boolean active = tradingActive;
+        if (!active || ingressMode == IngressMode.RingBuffer) {
+            for (int i = 0; i < count; i++) {
+                outcomes[i] = handOff(orders[offset + i], active);
+            }
+            return count;
+        }
+
+        stateLock.lock();
+        try {
+            for (int i = 0; i < count; i++) {
+                outcomes[i] = applyRequest(orders[offset + i]);
+            }
+            flushTransmits();
+        } finally {
+            stateLock.unlock();
+        }
+        return count;
+    }
+
+    public int onData(List<OrderRequest> orders, RequestOutcome[] outcomes) {
+        int count = orders.size();
+        boolean active = tradingActive;
+        if (!active || ingressMode == IngressMode.RingBuffer) {
+            for (int i = 0; i < count; i++) {
+                outcomes[i] = handOff(orders.get(i), active);
+            }
+            return count;
+        }
+
+        stateLock.lock();
+        try {
+            for (int i = 0; i < count; i++) {
+                outcomes[i] = applyRequest(orders.get(i));
+            }
+            flushTransmits();
+        } finally {
+            stateLock.unlock();
+        }
+        return count;
+    }
+
+    // Requests not applied on the caller's thread: rejected outside the
+    // trading window, otherwise published to the ingress ring
+    private RequestOutcome handOff(OrderRequest order, boolean active) {
+        if (!active) {
+            eventSink.onOrderRejected(order, RejectReason.OutsideTradingHours);
+            recycle(order);
+            return RequestOutcome.Rejected;
+        }
+        if (ingressRing.offer(order)) {
+            return RequestOutcome.Published;
+        }
+        eventSink.onOrderRejected(order, RejectReason.IngressFull);
+        recycle(order);
+        return RequestOutcome.Rejected;
+    }
+
+    // Caller must hold stateLock. Takes ownership of the request.
+    private RequestOutcome applyRequest(OrderRequest order) {
+        // Each handler decides whether the request is retained (queued or sent),
+        // and journals it once it has passed validation and risk checks
+        switch (order.m_requestType) {
+            case New:
+                return addNewOrder(order);
+            case Modify:
+                return updateExistingOrder(order);
+            case Cancel:
+                return removeOrder(order);
+            default:
+                eventSink.onOrderRejected(order, RejectReason.UnsupportedRequest);
+                recycle(order);
+                return RequestOutcome.Rejected;
+        }
+    }
+
+    // Single consumer of the ingress ring. Drains in batches so stateLock is
+    // taken once per batch and only contended by the timer thread.
+    private void runIngressLoop() {
+        int idleSpins = 0;
+        while (ingressRunning || !ingressRing.isEmpty()) {
+            OrderRequest order = ingressRing.poll();
+            if (order == null) {
+                if (++idleSpins < INGRESS_SPIN_TRIES) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.parkNanos(50_000);
+                }
+                continue;
+            }
+            idleSpins = 0;
+
+            stateLock.lock();
+            try {
+                int drained = 0;
+                do {
+                    applyRequest(order);
+                } while (++drained < INGRESS_BATCH_SIZE && (order = ingressRing.poll()) != null);
+                flushTransmits();
+            } finally {
+                stateLock.unlock();
+            }
+        }
+    }
+
+    private RequestOutcome addNewOrder(OrderRequest order) {
+        int symbolId = order.m_symbolId;
+        if (!pendingOrders.isValidSymbol(symbolId)) { // before any table indexed by it
+            eventSink.onOrderRejected(order, RejectReason.InvalidSymbol);
+            recycle(order);
+            return RequestOutcome.Rejected;
+        }
+        // Risk first, so a rejected order never takes a throttle permit or a queue slot
+        if (riskChecks != null && riskChecks.evaluate(order, fixedPointPrices) != PreTradeRiskChain.ACCEPTED) {
+            eventSink.onOrderRejected(order, RejectReason.RiskLimit);
+            recycle(order);
+            return RequestOutcome.Rejected;
+        }
+        journalRequest(order);
+        // Queued work has first claim on a free global permit, so drain it first:
+        // a permit still left over is one no queued symbol could use (all at their
+        // own limits). Only then may this order skip the queue - and only when
+        // nothing is waiting for its symbol, to keep FIFO order.
+        long now = System.nanoTime();
+        if ((pendingOrders.size() > 0 || !amendLane.isEmpty()) && throttle.canAcquire(now)) {
+            drainQueues(now);
+        }
+        if (pendingOrders.isEmpty(symbolId) && amendLane.isEmpty()
+                && pendingOrders.tryAcquireDirect(symbolId, throttle, now)) {
+            sendOrder(order);
+            return RequestOutcome.Sent;
+        }
+        queuedOrderLookup.put(order.m_orderId, pendingOrders.add(order));
+        recycle(order); // copied into the store
+        wakeDrainLoop();
+        return RequestOutcome.Queued;
+    }
+
+    // Only accepted requests reach the journal, so replay never resurrects an
+    // order that was refused the first time round
+    private void journalRequest(OrderRequest order) {
+        if (orderJournal != null) {
+            orderJournal.appendRequest(order);
+        }
+    }
+
+    // Runs the risk chain on the order as it would be after the Modify: the
+    // new price and qty on the original symbol and side
+    private boolean passesRiskAfterAmend(OrderRequest modify, int symbolId, char side) {
+        if (riskChecks == null) {
+            return true;
+        }
+        OrderRequest amended = amendedOrder;
+        amended.m_orderId = modify.m_orderId;
+        amended.m_requestType = RequestType.Modify;
+        amended.m_symbolId = symbolId;
+        amended.m_side = side;
+        amended.m_price = modify.m_price;
+        amended.m_fixedPrice = modify.m_fixedPrice;
+        amended.m_qty = modify.m_qty;
+        return riskChecks.evaluate(amended, fixedPointPrices) == PreTradeRiskChain.ACCEPTED;
+    }
+
+    private RequestOutcome rejectAmend(OrderRequest modify, int symbolId) {
+        modify.m_symbolId = symbolId;
+        eventSink.onOrderRejected(modify, RejectReason.RiskLimit);
+        recycle(modify);
+        return RequestOutcome.Rejected;
+    }
+
+    private static long liveState(int symbolId, char side) {
+        return symbolId | (side == 'S' ? LIVE_SELL : 0);
+    }
+
+    private static char liveSide(long state) {
+        return (state & LIVE_SELL) != 0 ? 'S' : 'B';
+    }
+
+    // Caller must hold stateLock. The order is recycled once transmitted; it is
+    // registered as sent just before, so a failed transmit can be undone
+    // (onTransmitFailed).
+    private void sendOrder(OrderRequest order) {
+        if (order.m_requestType == RequestType.New) {
+            // Live from here, not from the flush, so a Cancel or Modify of an
+            // order still sitting in the transmit buffer finds it and follows it out
+            liveOrders.put(order.m_orderId, liveState(order.m_symbolId, order.m_side));
+        }
+        if (transmitBuffer == null) {
+            markSent(order, System.nanoTime());
+            transmitOrder(order);
+            recycle(order);
+            return;
+        }
+        if (transmitCount == 0) {
+            oldestBufferedNanos = System.nanoTime();
+            wakeDrainLoop();
+        }
+        transmitBuffer[transmitCount++] = order;
+        if (transmitCount == transmitBuffer.length) {
+            flushTransmits();
+        }
+    }
+
+    // Caller must hold stateLock
+    private void flushTransmits() {
+        if (transmitCount == 0) {
+            return;
+        }
+        long sentTime = System.nanoTime();
+        for (int i = 0; i < transmitCount; i++) {
+            markSent(transmitBuffer[i], sentTime);
+        }
+        transmitBatch(transmitBuffer, transmitCount);
+        for (int i = 0; i < transmitCount; i++) {
+            recycle(transmitBuffer[i]);
+            transmitBuffer[i] = null;
+        }
+        transmitCount = 0;
+    }
+
+    // Caller must hold stateLock
+    private void flushTransmitsIfDue() {
+        if (transmitCount > 0 && System.nanoTime() - oldestBufferedNanos >= transmitFlushNanos) {
+            flushTransmits();
+        }
+    }
+
+    private void flushDueTransmits() {
+        stateLock.lock();
+        try {
+            flushTransmitsIfDue();
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
+    // Amends aren't tracked in flight: the order's own New entry is what the
+    // response latency and timeout refer to
+    private void markSent(OrderRequest order, long sentTime) {
+        if (order.m_requestType == RequestType.New) {
+            inFlightOrders.add(order.m_orderId, order.m_symbolId, sentTime);
+            if (orderJournal != null) {
+                orderJournal.appendSent(order.m_orderId, order.m_symbolId, order.m_side,
+                        System.currentTimeMillis());
+            }
+        }
+    }
+
+    // The request never reached the exchange: the session's outbound buffer was
+    // full, it wasn't logged on, or the connection dropped with it still
+    // buffered. A New is no longer in flight or live and a Modify stops holding
+    // back the next one. A Cancel puts its order back in liveOrders, so the
+    // rejection is the client's cue to resend it once the session is back -
+    // unless the New was handed back ahead of it, in which case there is
+    // nothing left to cancel.
+    // Called by ExchangeSession (and by transmitOrder/transmitBatch); the
+    // request is neither retained nor recycled.
+    public void onTransmitFailed(OrderRequest request) {
+        stateLock.lock();
+        try {
+            switch (request.m_requestType) {
                 case New:
-                    addNewOrder(order);
+                    int slot = inFlightOrders.indexOf(request.m_orderId);
+                    if (slot >= 0) {
+                        inFlightOrders.remove(slot);
+                        if (liveOrders.get(request.m_orderId) == NOT_LIVE) {
+                            cancelledUnsentNews.put(request.m_orderId, 1); // its Cancel comes back next
+                        }
+                    }
+                    dropLiveOrder(request.m_orderId);
+                    if (orderJournal != null) {
+                        orderJournal.appendNotSent(request.m_orderId);
+                    }
                     break;
                 case Modify:
-                    updateExistingOrder(order);
+                    onReplaceAnswered(request.m_orderId);
                     break;
                 case Cancel:
-                    removeOrder(order);
+                    if (cancelledUnsentNews.remove(request.m_orderId) == NOT_LIVE) {
+                        liveOrders.put(request.m_orderId, liveState(request.m_symbolId, request.m_side));
+                        if (orderJournal != null) {
+                            orderJournal.appendCancelNotSent(request.m_orderId, request.m_symbolId,
+                                    request.m_side);
+                        }
+                    }
                     break;
                 default:
-                    System.out.println("Unsupported request type");
+                    break;
             }
+            eventSink.onOrderRejected(request, RejectReason.NotTransmitted);
         } finally {
             stateLock.unlock();
         }
     }
 
-    private void addNewOrder(OrderRequest order) {
-        if (ordersSentThisSecond.get() < maxOrdersPerSecond) {
-            ordersSentThisSecond.incrementAndGet();
-            transmitOrder(order);
-            sentOrderTimestamps.put(order.m_orderId, System.currentTimeMillis());
-        } else {
-            pendingOrders.add(order);
-            queuedOrderLookup.put(order.m_orderId, order);
+    // A queued order is changed in place; a live one gets a Modify sent to the exchange
+    private RequestOutcome updateExistingOrder(OrderRequest order) {
+        int slot = (int) queuedOrderLookup.get(order.m_orderId);
+        if (slot == OffHeapOrderStore.NONE) {
+            return amendLiveOrder(order);
         }
+        int symbolId = pendingOrders.symbolId(slot);
+        if (!passesRiskAfterAmend(order, symbolId, pendingOrders.side(slot))) {
+            return rejectAmend(order, symbolId);
+        }
+        journalRequest(order);
+        pendingOrders.amend(slot, order.m_price, order.m_fixedPrice, order.m_qty);
+        recycle(order);
+        return RequestOutcome.Modified;
     }
 
-    private void updateExistingOrder(OrderRequest order) {
-        OrderRequest queued = queuedOrderLookup.get(order.m_orderId);
-        if (queued != null) {
-            queued.m_price = order.m_price;
-            queued.m_qty = order.m_qty;
+    // A queued order is dropped before it is ever sent; a live one gets a Cancel sent to the exchange
+    private RequestOutcome removeOrder(OrderRequest order) {
+        journalRequest(order);
+        int slot = (int) queuedOrderLookup.remove(order.m_orderId);
+        if (slot == OffHeapOrderStore.NONE) {
+            return amendLiveOrder(order);
         }
+        pendingOrders.remove(slot);
+        recycle(order);
+        return RequestOutcome.Cancelled;
+    }
+
+    // Modify/Cancel of an order already at the exchange. These reduce risk, so
+    // they take the next throttle permits ahead of every queued New (the lane
+    // is drained first and News can't bypass it). Only the global throttle
+    // applies - a symbol's own limit never holds back a cancel.
+    private RequestOutcome amendLiveOrder(OrderRequest order) {
+        return order.m_requestType == RequestType.Cancel ? cancelLiveOrder(order) : replaceLiveOrder(order);
     }
 
-    private void removeOrder(OrderRequest order) {
-        OrderRequest queued = queuedOrderLookup.remove(order.m_orderId);
-        if (queued != null) {
-            pendingOrders.remove(queued);
+    // An order has at most one replace outstanding. A Modify arriving while an
+    // earlier one is still queued or unanswered is folded into the waiting one
+    // (latest price/qty win), so an amend storm costs one message per exchange
+    // round trip instead of one throttle permit per request.
+    private RequestOutcome replaceLiveOrder(OrderRequest order) {
+        long state = liveOrders.get(order.m_orderId);
+        if (state == NOT_LIVE) {
+            recycle(order);
+            return RequestOutcome.NotFound;
+        }
+        if (!passesRiskAfterAmend(order, (int) state, liveSide(state))) {
+            return rejectAmend(order, (int) state);
+        }
+        journalRequest(order);
+        PendingOrderQueue.Node node = queuedAmends.get(order.m_orderId);
+        OrderRequest waiting = node != null ? node.order() : heldReplaces.get(order.m_orderId);
+        if (waiting != null) {
+            waiting.m_price = order.m_price;
+            waiting.m_fixedPrice = order.m_fixedPrice;
+            waiting.m_qty = order.m_qty;
+            coalescedAmends++;
+            recycle(order);
+            return RequestOutcome.Modified;
+        }
+        order.m_symbolId = (int) state;
+        if (inFlightReplaces.indexOf(order.m_orderId) >= 0) {
+            heldReplaces.put(order.m_orderId, order); // released by the replace's response or timeout
+            return RequestOutcome.Queued;
+        }
+        return submitAmend(order);
+    }
+
+    // A cancel is never held back by an outstanding replace, and it supersedes
+    // any replace still waiting
+    private RequestOutcome cancelLiveOrder(OrderRequest order) {
+        long state = liveOrders.remove(order.m_orderId);
+        if (state == NOT_LIVE) {
+            recycle(order);
+            return RequestOutcome.NotFound;
+        }
+        OrderRequest held = heldReplaces.remove(order.m_orderId);
+        if (held != null) {
+            coalescedAmends++;
+            recycle(held);
+        }
+        PendingOrderQueue.Node node = queuedAmends.get(order.m_orderId);
+        if (node != null) {
+            // The queued replace turns into the cancel and keeps its place in the lane
+            node.order().m_requestType = RequestType.Cancel;
+            coalescedAmends++;
+            recycle(order);
+            return RequestOutcome.Queued;
+        }
+        order.m_symbolId = (int) state;
+        order.m_side = liveSide(state); // with the symbol, what onTransmitFailed needs to make it live again
+        return submitAmend(order);
+    }
+
+    private RequestOutcome submitAmend(OrderRequest order) {
+        if (amendLane.isEmpty() && throttle.tryAcquire(System.nanoTime())) {
+            sendAmend(order);
+            return RequestOutcome.Sent;
+        }
+        queuedAmends.put(order.m_orderId, amendLane.add(order));
+        wakeDrainLoop();
+        return RequestOutcome.Queued;
+    }
+
+    // The replace counts as outstanding from the moment it leaves the lane, so a
+    // Modify arriving while it sits in the transmit buffer is held too
+    private void sendAmend(OrderRequest order) {
+        if (order.m_requestType == RequestType.Modify) {
+            inFlightReplaces.add(order.m_orderId, order.m_symbolId, System.nanoTime());
+        }
+        sendOrder(order);
+    }
+
+    // The exchange answered a replace: the next held Modify (if any) can go
+    private void onReplaceAnswered(long orderId) {
+        int slot = inFlightReplaces.indexOf(orderId);
+        if (slot < 0) {
+            return;
+        }
+        inFlightReplaces.remove(slot);
+        releaseHeldReplace(orderId);
+    }
+
+    private void releaseHeldReplace(long orderId) {
+        OrderRequest held = heldReplaces.remove(orderId);
+        if (held != null) {
+            submitAmend(held);
+        }
+    }
+
+    // The order was refused, filled or timed out, so amends still waiting for
+    // it have nothing to act on
+    private void dropLiveOrder(long orderId) {
+        liveOrders.remove(orderId);
+        int slot = inFlightReplaces.indexOf(orderId);
+        if (slot >= 0) {
+            inFlightReplaces.remove(slot);
+        }
+        PendingOrderQueue.Node node = queuedAmends.remove(orderId);
+        if (node != null) {
+            OrderRequest amend = node.order();
+            amendLane.remove(node);
+            recycle(amend);
+        }
+        OrderRequest held = heldReplaces.remove(orderId);
+        if (held != null) {
+            recycle(held);
+        }
+    }
+
+    // Modify/Cancel requests folded into one already waiting instead of costing a message
+    public long coalescedAmendCount() {
+        stateLock.lock();
+        try {
+            return coalescedAmends;
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
+    public int pendingOrderCount() {
+        stateLock.lock();
+        try {
+            return pendingOrders.size() + amendLane.size() + heldReplaces.size();
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
+    public int inFlightOrderCount() {
+        stateLock.lock();
+        try {
+            return inFlightOrders.size();
+        } finally {
+            stateLock.unlock();
         }
     }
 
     // Handle exchange responses
     public void onData(OrderResponse response) {
-        Long sentTime = sentOrderTimestamps.remove(response.m_orderId);
-        if (sentTime != null) {
-            long timeTaken = System.currentTimeMillis() - sentTime;
-            recordResponse(response, timeTaken);
+        long latency = NO_LATENCY;
+        stateLock.lock();
+        try {
+            if (response.m_responseType == ResponseType.Filled) {
+                dropLiveOrder(response.m_orderId); // nothing left to amend, so held amends go too
+            }
+            RequestType answered = response.m_requestType != null ? response.m_requestType : RequestType.Unknown;
+            if (answered == RequestType.Modify) {
+                onReplaceAnswered(response.m_orderId);
+            } else if (answered == RequestType.Cancel) {
+                cancelledUnsentNews.remove(response.m_orderId); // the Cancel got out after all
+            } else {
+                // The New's answer. An exchange that doesn't echo the request type
+                // only ever answers the New here: its replace acks can't be told
+                // apart from a late New response, so held replaces wait for the timeout.
+                int slot = inFlightOrders.indexOf(response.m_orderId);
+                if (slot >= 0) {
+                    latency = System.nanoTime() - inFlightOrders.sentNanos(slot);
+                    latencyStats.record(response.m_responseType, inFlightOrders.symbolId(slot), latency);
+                    inFlightOrders.remove(slot);
+                    if (response.m_responseType == ResponseType.Reject) {
+                        dropLiveOrder(response.m_orderId); // the New itself was refused
+                    }
+                }
+            }
+            if (orderJournal != null) {
+                orderJournal.appendResponse(response);
+            }
+        } finally {
+            stateLock.unlock();
+        }
+        if (latency != NO_LATENCY) {
+            recordResponse(response, latency);
+        }
+        recycle(response);
+    }
+
+    private void recordResponse(OrderResponse response, long latencyNanos) {
+        eventSink.onResponse(response, latencyNanos);
+    }
+
+    // Orders the exchange never answered are dropped after config.inFlightTimeoutMillis.
+    // An unanswered replace just stops holding back the next Modify.
+    private void expireInFlightOrders() {
+        stateLock.lock();
+        try {
+            long now = System.nanoTime();
+            timedOutOrders += inFlightOrders.expire(now, (orderId, symbolId, sentNanos) -> {
+                if (orderJournal != null) {
+                    orderJournal.appendTimeout(orderId);
+                }
+                dropLiveOrder(orderId);
+                eventSink.onOrderTimeout(orderId, symbolId, now - sentNanos);
+            });
+            inFlightReplaces.expire(now, (orderId, symbolId, sentNanos) -> releaseHeldReplace(orderId));
+        } finally {
+            stateLock.unlock();
         }
     }
 
-    private void recordResponse(OrderResponse response, long latency) {
-        // In real system, this would write to database/file
-        System.out.printf("Response: ID=%d, Status=%s, Latency=%dms%n",
-                response.m_orderId, response.m_responseType, latency);
+    public long timedOutOrderCount() {
+        stateLock.lock();
+        try {
+            return timedOutOrders;
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
+    // Latency percentiles since the last reset; reset=true starts a new interval
+    public LatencySnapshot latencySnapshot(boolean reset) {
+        stateLock.lock();
+        try {
+            return latencyStats.snapshot(reset);
+        } finally {
+            stateLock.unlock();
+        }
     }
 
     // Exchange communication
     public void transmitOrder(OrderRequest request) {
-        System.out.println("Sending order: " + request.m_orderId);
+        if (exchangeSession != null && !exchangeSession.send(request)) {
+            onTransmitFailed(request);
+            return;
+        }
+        eventSink.onOrderSent(request);
+    }
+
+    // Called instead of transmitOrder when transmit batching is on. Override
+    // to coalesce the batch into one exchange write; requests must not be
+    // retained after returning.
+    public void transmitBatch(OrderRequest[] requests, int count) {
+        if (exchangeSession == null) {
+            for (int i = 0; i < count; i++) {
+                transmitOrder(requests[i]);
+            }
+            return;
+        }
+        int buffered = exchangeSession.sendBatch(requests, count);
+        for (int i = 0; i < count; i++) {
+            if (i < buffered) {
+                eventSink.onOrderSent(requests[i]);
+            } else {
+                onTransmitFailed(requests[i]);
+            }
+        }
     }
 
     public void sendLogon() {
-        System.out.println(">> Logon message sent");
+        if (exchangeSession != null) {
+            exchangeSession.logon();
+        }
+        eventSink.onLogon();
     }
 
     public void sendLogout() {
-        System.out.println(">> Logout message sent");
+        if (exchangeSession != null) {
+            exchangeSession.logout();
+        }
+        eventSink.onLogout();
+    }
+
+    // Disconnected when there is no exchange connection configured
+    public SessionState exchangeSessionState() {
+        return exchangeSession != null ? exchangeSession.state() : SessionState.Disconnected;
     }
 
     private void processQueuedOrders() {
         stateLock.lock();
         try {
-            ordersSentThisSecond.set(0);
-            int availableSlots = maxOrdersPerSecond;
-
-            while (availableSlots > 0 && !pendingOrders.isEmpty()) {
-                OrderRequest nextOrder = pendingOrders.poll();
-                if (queuedOrderLookup.remove(nextOrder.m_orderId) != null) {
-                    transmitOrder(nextOrder);
-                    sentOrderTimestamps.put(nextOrder.m_orderId, System.currentTimeMillis());
-                    ordersSentThisSecond.incrementAndGet();
-                    availableSlots--;
-                }
-            }
+            drainQueues(System.nanoTime());
+            flushTransmits();
         } finally {
             stateLock.unlock();
         }
     }
 
+    // Caller must hold stateLock. Amends first, then News round-robin by symbol.
+    private void drainQueues(long now) {
+        while (!amendLane.isEmpty() && throttle.tryAcquire(now)) {
+            OrderRequest amend = amendLane.poll();
+            queuedAmends.remove(amend.m_orderId);
+            sendAmend(amend);
+        }
+        while (amendLane.isEmpty() && pendingOrders.size() > 0) {
+            OrderRequest nextOrder = claimRequest();
+            if (!pendingOrders.pollNext(throttle, now, nextOrder)) {
+                recycle(nextOrder);
+                break;
+            }
+            queuedOrderLookup.remove(nextOrder.m_orderId);
+            sendOrder(nextOrder);
+        }
+    }
+
     private void verifyTradingWindow() {
-        LocalTime currentTime = LocalTime.now();
-        boolean shouldBeActive = !currentTime.isBefore(tradingStart)
-                && !currentTime.isAfter(tradingEnd);
+        boolean shouldBeActive = tradingSchedule.isOpen(Instant.now());
 
         if (shouldBeActive && !tradingActive) {
             tradingActive = true;
@@ -166,29 +1114,196 @@ public class OrderManagement {
         }
     }
 
+    // Rebuilds pending and in-flight orders from the journal. Runs in the
+    // constructor before any other thread can see this instance.
+    private void recoverState() {
+        // The journal keeps wall-clock send times; map them onto nanoTime
+        long nowNanos = System.nanoTime();
+        long nowMillis = System.currentTimeMillis();
+        orderJournal.replay(new OrderStateJournal.RecoveryListener() {
+            @Override
+            public void onNew(OrderRequest order) {
+                if (pendingOrders.isValidSymbol(order.m_symbolId)) {
+                    queuedOrderLookup.put(order.m_orderId, pendingOrders.add(order));
+                }
+            }
+
+            @Override
+            public void onModify(long orderId, double price, long fixedPrice, long qty) {
+                int slot = (int) queuedOrderLookup.get(orderId);
+                if (slot != OffHeapOrderStore.NONE) {
+                    pendingOrders.amend(slot, price, fixedPrice, qty);
+                }
+            }
+
+            @Override
+            public void onCancel(long orderId) {
+                int slot = (int) queuedOrderLookup.remove(orderId);
+                if (slot != OffHeapOrderStore.NONE) {
+                    pendingOrders.remove(slot);
+                } else {
+                    liveOrders.remove(orderId); // a cancel for a live order went to the exchange
+                }
+            }
+
+            @Override
+            public void onSent(long orderId, int symbolId, char side, long sentTimeMillis) {
+                int slot = (int) queuedOrderLookup.remove(orderId); // no longer queued
+                if (slot != OffHeapOrderStore.NONE) {
+                    side = pendingOrders.side(slot);
+                    pendingOrders.remove(slot);
+                }
+                inFlightOrders.add(orderId, symbolId, nowNanos - (nowMillis - sentTimeMillis) * 1_000_000L);
+                liveOrders.put(orderId, liveState(symbolId, side));
+            }
+
+            @Override
+            public void onResponse(long orderId, RequestType answered, ResponseType responseType) {
+                if (answered != RequestType.Modify && answered != RequestType.Cancel) {
+                    int slot = inFlightOrders.indexOf(orderId);
+                    if (slot >= 0) {
+                        inFlightOrders.remove(slot);
+                        if (responseType == ResponseType.Reject) {
+                            liveOrders.remove(orderId);
+                        }
+                    }
+                }
+                if (responseType == ResponseType.Filled) {
+                    liveOrders.remove(orderId);
+                }
+            }
+
+            @Override
+            public void onTimeout(long orderId) {
+                int slot = inFlightOrders.indexOf(orderId);
+                if (slot >= 0) {
+                    inFlightOrders.remove(slot);
+                }
+                liveOrders.remove(orderId);
+            }
+
+            @Override
+            public void onNotSent(long orderId) {
+                onTimeout(orderId);
+            }
+
+            @Override
+            public void onCancelNotSent(long orderId, int symbolId, char side) {
+                liveOrders.put(orderId, liveState(symbolId, side));
+            }
+        });
+    }
+
+    // Journal compaction: the records that rebuild today's queues and live
+    // orders on replay. Called by the journal from an append (under stateLock)
+    // or from the constructor.
+    private void writeCheckpoint(OrderStateJournal journal) {
+        OrderRequest record = new OrderRequest();
+        pendingOrders.forEachQueued(record, journal::appendRequest);
+
+        // News still in the transmit buffer were never sent: replay queues them
+        LongLongHashMap buffered = new LongLongHashMap(Math.max(transmitCount, 1), NOT_LIVE);
+        for (int i = 0; i < transmitCount; i++) {
+            OrderRequest order = transmitBuffer[i];
+            if (order.m_requestType == RequestType.New && inFlightOrders.indexOf(order.m_orderId) < 0) {
+                buffered.put(order.m_orderId, order.m_symbolId);
+                journal.appendRequest(order);
+            }
+        }
+
+        long nowNanos = System.nanoTime();
+        long nowMillis = System.currentTimeMillis();
+        inFlightOrders.forEach((orderId, symbolId, sentNanos) -> {
+            long state = liveOrders.get(orderId);
+            journal.appendSent(orderId, symbolId, state != NOT_LIVE ? liveSide(state) : 'B',
+                    nowMillis - TimeUnit.NANOSECONDS.toMillis(nowNanos - sentNanos));
+            if (state == NOT_LIVE) { // cancelled while its New was in flight
+                record.m_orderId = orderId;
+                record.m_requestType = RequestType.Cancel;
+                journal.appendRequest(record);
+            }
+        });
+
+        // Answered and still working: sent, then accepted
+        OrderResponse accepted = new OrderResponse();
+        accepted.m_requestType = RequestType.New;
+        accepted.m_responseType = ResponseType.Accept;
+        liveOrders.forEach((orderId, state) -> {
+            if (inFlightOrders.indexOf(orderId) < 0 && buffered.get(orderId) == NOT_LIVE) {
+                journal.appendSent(orderId, (int) state, liveSide(state), nowMillis);
+                accepted.m_orderId = orderId;
+                journal.appendResponse(accepted);
+            }
+        });
+    }
+
     // Cleanup resources
     public void stop() {
-        timer.shutdown();
+        if (ingressThread != null) {
+            // Let the ingress thread drain whatever was already published
+            ingressRunning = false;
+            try {
+                ingressThread.join(800);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // Waits for a run in progress; the scheduler itself keeps serving other instances
+        TimingWheelScheduler.Timeout lastWindowTimer;
+        synchronized (timers) {
+            timersStopped = true;
+            lastWindowTimer = windowTimer;
+        }
+        if (lastWindowTimer != null) {
+            lastWindowTimer.cancel();
+        }
+        for (TimingWheelScheduler.Timeout timeout : timers) {
+            timeout.cancel();
+        }
+        sessionThreadsRunning = false;
+        for (Thread thread : sessionThreads) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join(800);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        stateLock.lock();
+        try {
+            flushTransmits();
+        } finally {
+            stateLock.unlock();
+        }
+        // Orders the session never got out are handed back (and journaled) while closing
+        if (exchangeSession != null) {
+            exchangeSession.close();
+        }
+        stateLock.lock();
         try {
-            if (!timer.awaitTermination(800, TimeUnit.MILLISECONDS)) {
-                timer.shutdownNow();
+            if (orderJournal != null) {
+                orderJournal.close();
             }
-        } catch (InterruptedException e) {
-            timer.shutdownNow();
-            Thread.currentThread().interrupt();
+        } finally {
+            stateLock.unlock();
         }
+        eventSink.close();
     }
 
     // Test harness
     public static void main(String[] args) throws Exception {
         System.out.println("=== Starting OMS Test ===");
 
-        // Setup trading window (current time ±1 hour)
-        OrderManagement oms = new OrderManagement(
+        // Setup trading window (current time ±1 hour), printing events to the console
+        OrderManagementConfig config = new OrderManagementConfig(
                 LocalTime.now().minusHours(1),
                 LocalTime.now().plusHours(1),
                 100
         );
+        config.eventSink = new ConsoleEventSink();
+        OrderManagement oms = new OrderManagement(config);
 
         // Brief pause for initialization
         Thread.sleep(50);
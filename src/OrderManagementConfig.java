@@ -0,0 +1,60 @@
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalTime;
+
+/*
+ * Construction-time settings for OrderManagement.
+ * Only the trading window and rate are required; everything else has a
+ * sensible default so the simple constructors keep working.
+ */
+public class OrderManagementConfig implements Cloneable {
+    public LocalTime tradingStart;
+    public LocalTime tradingEnd;
+    public int maxOrdersPerSecond;
+    public TradingSchedule tradingSchedule; // null = every day from tradingStart to tradingEnd
+    public IngressMode ingressMode = IngressMode.Locked;
+    public ThrottleType throttleType = ThrottleType.TokenBucket;
+    public int throttleBurst = 0; // 0 = one second's worth of orders
+    public OrderThrottle globalThrottle; // null = own throttle from throttleType; set to share one limit (must be thread safe)
+    public int maxOrdersPerSecondPerSymbol = 0; // 0 = symbols only share the global limit
+    public int symbolThrottleBurst = 0; // 0 = one second's worth of orders for the symbol
+    public int symbolCapacity = 1 << 16; // m_symbolId must be in [0, symbolCapacity)
+    public PriceScales priceScales; // null = double m_price; set for fixed-point m_fixedPrice (journal and wire too)
+    public PreTradeRiskChain preTradeChecks; // null = no pre-trade risk checks; tables sized by symbolCapacity
+    public int expectedLiveOrders = 1024; // initial sizing of the order id maps; they double as needed, so raise only to avoid rehash pauses
+    public int orderStoreInitialCapacity = 1024; // queued orders held off-heap before the store first doubles
+    public int transmitBatchSize = 0; // 0 = transmit each order immediately
+    public long transmitFlushMicros = 50; // max time an order waits in a partial transmit batch
+    public int messagePoolSize = 0; // power of two; 0 = no pooling, callers own their messages
+    public OmsEventSink eventSink; // null = BinaryEventJournal at eventJournalPath
+    public Path eventJournalPath; // null = oms-events-<pid>-<n>.bin in eventJournalDirectory
+    public Path eventJournalDirectory = Paths.get(System.getProperty("java.io.tmpdir")); // default journals; kept after stop()
+    public int eventJournalCapacity = 1 << 16; // records buffered ahead of the flusher, power of two
+    public Path orderJournalPath; // null = no write-ahead journal / recovery
+    // Initial mapping size; compacted when full, doubled only if still over half full.
+    // Compaction runs inline on the thread whose append filled the journal, under the
+    // OMS lock: it rewrites every live order, force()s and renames the file, stalling
+    // order flow for that long. Size this well above a day's traffic to keep it off-peak.
+    public long orderJournalInitialRecords = 1 << 20;
+    public long inFlightTimeoutMillis = 60_000; // unanswered orders are dropped after this; 0 = keep forever
+    public ExecutionMode executionMode = ExecutionMode.SharedScheduler;
+    public TimingWheelScheduler scheduler; // null = TimingWheelScheduler.shared() (one per shard when sharded); unused with VirtualThreads
+    public InetSocketAddress exchangeAddress; // null = no exchange connection, events go to the sink only
+    public long heartbeatIntervalMillis = 1000;
+
+    public OrderManagementConfig(LocalTime start, LocalTime end, int maxPerSecond) {
+        this.tradingStart = start;
+        this.tradingEnd = end;
+        this.maxOrdersPerSecond = maxPerSecond;
+    }
+
+    // Shallow copy, e.g. to derive per-shard configs from one template
+    public OrderManagementConfig copy() {
+        try {
+            return (OrderManagementConfig) super.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
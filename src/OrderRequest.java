@@ -1,6 +1,7 @@
 public class OrderRequest {
     public int m_symbolId;
     public double m_price;
+    public long m_fixedPrice; // price x 10^scale of the symbol, used when priceScales is configured
     public long m_qty;
     public char m_side; // 'B' or 'S'
     public long m_orderId;
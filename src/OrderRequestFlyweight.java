@@ -0,0 +1,217 @@
+import java.nio.ByteBuffer;
+
+/*
+ * Flyweight over an encoded OrderRequest (see WireFormat).
+ * wrap() points it at a message inside a buffer; getters and setters then
+ * read and write the fields in place. One instance can be reused for every
+ * message, but an instance must not be shared between threads.
+ *
+ * Body (32 bytes, after the header):
+ *   0  long   orderId
+ *   8  double price, or long fixed-point price (see price format)
+ *   16 long   qty
+ *   24 int    symbolId
+ *   28 byte   RequestType ordinal
+ *   29 byte   side ('B' / 'S')
+ *   30 byte   price format (PRICE_DOUBLE / PRICE_FIXED_POINT)
+ *   31 byte   price scale (fixed point: price = value / 10^scale)
+ *
+ * Format 0 is a double, which is what encoders from before fixed-point
+ * prices wrote into the then reserved bytes.
+ */
+public class OrderRequestFlyweight {
+    public static final int BLOCK_LENGTH = 32;
+    public static final int ENCODED_LENGTH = WireFormat.HEADER_LENGTH + BLOCK_LENGTH;
+    public static final byte PRICE_DOUBLE = 0;
+    public static final byte PRICE_FIXED_POINT = 1;
+    public static final int INVALID_PRICE = -1; // decode() result for a price the receiver can't take
+
+    private static final int ORDER_ID = WireFormat.HEADER_LENGTH;
+    private static final int PRICE = ORDER_ID + 8;
+    private static final int QTY = PRICE + 8;
+    private static final int SYMBOL_ID = QTY + 8;
+    private static final int REQUEST_TYPE = SYMBOL_ID + 4;
+    private static final int SIDE = REQUEST_TYPE + 1;
+    private static final int PRICE_FORMAT = SIDE + 1;
+    private static final int PRICE_SCALE = PRICE_FORMAT + 1;
+
+    private ByteBuffer buffer;
+    private int offset;
+
+    public OrderRequestFlyweight wrap(ByteBuffer buffer, int offset) {
+        WireFormat.checkByteOrder(buffer);
+        this.buffer = buffer;
+        this.offset = offset;
+        return this;
+    }
+
+    // Writes the header; follow with the setters
+    public OrderRequestFlyweight wrapForEncode(ByteBuffer buffer, int offset) {
+        wrap(buffer, offset);
+        WireFormat.putHeader(buffer, offset, BLOCK_LENGTH, WireFormat.ORDER_REQUEST_TEMPLATE_ID);
+        buffer.put(offset + PRICE_FORMAT, PRICE_DOUBLE);
+        buffer.put(offset + PRICE_SCALE, (byte) 0);
+        return this;
+    }
+
+    public long orderId() {
+        return buffer.getLong(offset + ORDER_ID);
+    }
+
+    public OrderRequestFlyweight orderId(long value) {
+        buffer.putLong(offset + ORDER_ID, value);
+        return this;
+    }
+
+    public double price() {
+        return buffer.getDouble(offset + PRICE);
+    }
+
+    public OrderRequestFlyweight price(double value) {
+        buffer.putDouble(offset + PRICE, value);
+        buffer.put(offset + PRICE_FORMAT, PRICE_DOUBLE);
+        buffer.put(offset + PRICE_SCALE, (byte) 0);
+        return this;
+    }
+
+    public boolean isFixedPointPrice() {
+        return buffer.get(offset + PRICE_FORMAT) == PRICE_FIXED_POINT;
+    }
+
+    public int priceScale() {
+        return buffer.get(offset + PRICE_SCALE);
+    }
+
+    public long fixedPrice() {
+        return buffer.getLong(offset + PRICE);
+    }
+
+    public OrderRequestFlyweight fixedPrice(long value, int scale) {
+        buffer.putLong(offset + PRICE, value);
+        buffer.put(offset + PRICE_FORMAT, PRICE_FIXED_POINT);
+        buffer.put(offset + PRICE_SCALE, (byte) scale);
+        return this;
+    }
+
+    public long qty() {
+        return buffer.getLong(offset + QTY);
+    }
+
+    public OrderRequestFlyweight qty(long value) {
+        buffer.putLong(offset + QTY, value);
+        return this;
+    }
+
+    public int symbolId() {
+        return buffer.getInt(offset + SYMBOL_ID);
+    }
+
+    public OrderRequestFlyweight symbolId(int value) {
+        buffer.putInt(offset + SYMBOL_ID, value);
+        return this;
+    }
+
+    public RequestType requestType() {
+        int ordinal = buffer.get(offset + REQUEST_TYPE);
+        return ordinal >= 0 && ordinal < WireFormat.REQUEST_TYPES.length
+                ? WireFormat.REQUEST_TYPES[ordinal] : RequestType.Unknown;
+    }
+
+    public OrderRequestFlyweight requestType(RequestType value) {
+        buffer.put(offset + REQUEST_TYPE, (byte) value.ordinal());
+        return this;
+    }
+
+    public char side() {
+        return (char) buffer.get(offset + SIDE);
+    }
+
+    public OrderRequestFlyweight side(char value) {
+        buffer.put(offset + SIDE, (byte) value);
+        return this;
+    }
+
+    // Encodes a whole request at offset with its double m_price; returns the encoded length
+    public static int encode(OrderRequest order, ByteBuffer buffer, int offset) {
+        encodeFields(order, buffer, offset);
+        buffer.putDouble(offset + PRICE, order.m_price);
+        buffer.put(offset + PRICE_FORMAT, PRICE_DOUBLE);
+        buffer.put(offset + PRICE_SCALE, (byte) 0);
+        return ENCODED_LENGTH;
+    }
+
+    // Same, with m_fixedPrice at the given scale
+    public static int encode(OrderRequest order, ByteBuffer buffer, int offset, int priceScale) {
+        encodeFields(order, buffer, offset);
+        buffer.putLong(offset + PRICE, order.m_fixedPrice);
+        buffer.put(offset + PRICE_FORMAT, PRICE_FIXED_POINT);
+        buffer.put(offset + PRICE_SCALE, (byte) priceScale);
+        return ENCODED_LENGTH;
+    }
+
+    private static void encodeFields(OrderRequest order, ByteBuffer buffer, int offset) {
+        WireFormat.checkByteOrder(buffer);
+        WireFormat.putHeader(buffer, offset, BLOCK_LENGTH, WireFormat.ORDER_REQUEST_TEMPLATE_ID);
+        buffer.putLong(offset + ORDER_ID, order.m_orderId);
+        buffer.putLong(offset + QTY, order.m_qty);
+        buffer.putInt(offset + SYMBOL_ID, order.m_symbolId);
+        buffer.put(offset + REQUEST_TYPE, (byte) order.m_requestType.ordinal());
+        buffer.put(offset + SIDE, (byte) order.m_side);
+    }
+
+    // Decodes the request at offset into target; returns the encoded length.
+    // Both price fields are always set, so nothing is left over from a pooled
+    // request: a fixed-point price keeps the wire value and scale in
+    // m_fixedPrice with m_price as its double view; a double price leaves
+    // m_fixedPrice 0.
+    public static int decode(ByteBuffer buffer, int offset, OrderRequest target) {
+        WireFormat.checkByteOrder(buffer);
+        target.m_orderId = buffer.getLong(offset + ORDER_ID);
+        if (buffer.get(offset + PRICE_FORMAT) == PRICE_FIXED_POINT) {
+            long fixedPrice = buffer.getLong(offset + PRICE);
+            int scale = buffer.get(offset + PRICE_SCALE);
+            target.m_fixedPrice = fixedPrice;
+            target.m_price = scale >= 0 && scale <= PriceScales.MAX_SCALE
+                    ? (double) fixedPrice / PriceScales.powerOfTen(scale) : Double.NaN;
+        } else {
+            target.m_price = buffer.getDouble(offset + PRICE);
+            target.m_fixedPrice = 0;
+        }
+        target.m_qty = buffer.getLong(offset + QTY);
+        target.m_symbolId = buffer.getInt(offset + SYMBOL_ID);
+        int type = buffer.get(offset + REQUEST_TYPE);
+        target.m_requestType = type >= 0 && type < WireFormat.REQUEST_TYPES.length
+                ? WireFormat.REQUEST_TYPES[type] : RequestType.Unknown;
+        target.m_side = (char) buffer.get(offset + SIDE);
+        return ENCODED_LENGTH;
+    }
+
+    // Same, for a receiver in fixed-point mode: m_fixedPrice ends up at the
+    // scale of the symbol in scales whatever the sender used. A double price
+    // is rounded to that scale; a fixed-point one is rescaled exactly, and a
+    // price finer than the symbol's tick (or out of range) returns
+    // INVALID_PRICE instead of being rounded. A symbol outside the table is
+    // left as sent for the OMS to reject. scales == null decodes as above.
+    public static int decode(ByteBuffer buffer, int offset, OrderRequest target, PriceScales scales) {
+        int length = decode(buffer, offset, target);
+        if (scales == null || !scales.isValidSymbol(target.m_symbolId)) {
+            return length;
+        }
+        int symbolId = target.m_symbolId;
+        if (buffer.get(offset + PRICE_FORMAT) == PRICE_FIXED_POINT) {
+            long fixedPrice = PriceScales.rescale(target.m_fixedPrice, buffer.get(offset + PRICE_SCALE),
+                    scales.scale(symbolId));
+            if (fixedPrice == PriceScales.NOT_REPRESENTABLE) {
+                return INVALID_PRICE;
+            }
+            target.m_fixedPrice = fixedPrice;
+        } else {
+            if (!Double.isFinite(target.m_price)) {
+                return INVALID_PRICE;
+            }
+            target.m_fixedPrice = scales.toFixed(symbolId, target.m_price);
+        }
+        target.m_price = scales.toDouble(symbolId, target.m_fixedPrice);
+        return length;
+    }
+}
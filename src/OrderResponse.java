@@ -1,4 +1,6 @@
 public class OrderResponse {
     public long m_orderId;
+    public int m_symbolId; // echoed by the exchange; used to route responses between shards
     public ResponseType m_responseType;
+    public RequestType m_requestType; // the request answered; Unknown (or null) when the exchange doesn't say
 }
@@ -0,0 +1,103 @@
+import java.nio.ByteBuffer;
+
+/*
+ * Flyweight over an encoded OrderResponse (see WireFormat).
+ * Same usage rules as OrderRequestFlyweight.
+ *
+ * Body (16 bytes, after the header):
+ *   0  long  orderId
+ *   8  int   symbolId
+ *   12 byte  ResponseType ordinal
+ *   13 byte  RequestType ordinal of the request answered (0 = Unknown)
+ *   14 byte  reserved x2
+ */
+public class OrderResponseFlyweight {
+    public static final int BLOCK_LENGTH = 16;
+    public static final int ENCODED_LENGTH = WireFormat.HEADER_LENGTH + BLOCK_LENGTH;
+
+    private static final int ORDER_ID = WireFormat.HEADER_LENGTH;
+    private static final int SYMBOL_ID = ORDER_ID + 8;
+    private static final int RESPONSE_TYPE = SYMBOL_ID + 4;
+    private static final int REQUEST_TYPE = RESPONSE_TYPE + 1;
+
+    private ByteBuffer buffer;
+    private int offset;
+
+    public OrderResponseFlyweight wrap(ByteBuffer buffer, int offset) {
+        WireFormat.checkByteOrder(buffer);
+        this.buffer = buffer;
+        this.offset = offset;
+        return this;
+    }
+
+    public OrderResponseFlyweight wrapForEncode(ByteBuffer buffer, int offset) {
+        wrap(buffer, offset);
+        WireFormat.putHeader(buffer, offset, BLOCK_LENGTH, WireFormat.ORDER_RESPONSE_TEMPLATE_ID);
+        return this;
+    }
+
+    public long orderId() {
+        return buffer.getLong(offset + ORDER_ID);
+    }
+
+    public OrderResponseFlyweight orderId(long value) {
+        buffer.putLong(offset + ORDER_ID, value);
+        return this;
+    }
+
+    public int symbolId() {
+        return buffer.getInt(offset + SYMBOL_ID);
+    }
+
+    public OrderResponseFlyweight symbolId(int value) {
+        buffer.putInt(offset + SYMBOL_ID, value);
+        return this;
+    }
+
+    public ResponseType responseType() {
+        int ordinal = buffer.get(offset + RESPONSE_TYPE);
+        return ordinal >= 0 && ordinal < WireFormat.RESPONSE_TYPES.length
+                ? WireFormat.RESPONSE_TYPES[ordinal] : ResponseType.Unknown;
+    }
+
+    public OrderResponseFlyweight responseType(ResponseType value) {
+        buffer.put(offset + RESPONSE_TYPE, (byte) value.ordinal());
+        return this;
+    }
+
+    public RequestType requestType() {
+        int ordinal = buffer.get(offset + REQUEST_TYPE);
+        return ordinal >= 0 && ordinal < WireFormat.REQUEST_TYPES.length
+                ? WireFormat.REQUEST_TYPES[ordinal] : RequestType.Unknown;
+    }
+
+    public OrderResponseFlyweight requestType(RequestType value) {
+        buffer.put(offset + REQUEST_TYPE, (byte) (value != null ? value.ordinal() : 0));
+        return this;
+    }
+
+    public static int encode(OrderResponse response, ByteBuffer buffer, int offset) {
+        WireFormat.checkByteOrder(buffer);
+        WireFormat.putHeader(buffer, offset, BLOCK_LENGTH, WireFormat.ORDER_RESPONSE_TEMPLATE_ID);
+        buffer.putLong(offset + ORDER_ID, response.m_orderId);
+        buffer.putInt(offset + SYMBOL_ID, response.m_symbolId);
+        buffer.put(offset + RESPONSE_TYPE, (byte) response.m_responseType.ordinal());
+        buffer.put(offset + REQUEST_TYPE,
+                (byte) (response.m_requestType != null ? response.m_requestType.ordinal() : 0));
+        buffer.putShort(offset + REQUEST_TYPE + 1, (short) 0);
+        return ENCODED_LENGTH;
+    }
+
+    public static int decode(ByteBuffer buffer, int offset, OrderResponse target) {
+        WireFormat.checkByteOrder(buffer);
+        target.m_orderId = buffer.getLong(offset + ORDER_ID);
+        target.m_symbolId = buffer.getInt(offset + SYMBOL_ID);
+        int type = buffer.get(offset + RESPONSE_TYPE);
+        target.m_responseType = type >= 0 && type < WireFormat.RESPONSE_TYPES.length
+                ? WireFormat.RESPONSE_TYPES[type] : ResponseType.Unknown;
+        int answered = buffer.get(offset + REQUEST_TYPE);
+        target.m_requestType = answered >= 0 && answered < WireFormat.REQUEST_TYPES.length
+                ? WireFormat.REQUEST_TYPES[answered] : RequestType.Unknown;
+        return ENCODED_LENGTH;
+    }
+}
@@ -0,0 +1,66 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * Multi-producer / single-consumer ring buffer for incoming orders.
+ * Producers claim a sequence with a CAS and publish by writing that sequence
+ * into the slot's availability marker, so the consumer only sees fully written
+ * entries (same idea as the Disruptor's multi-producer sequencer).
+ * The slot array is allocated once up front - nothing is allocated per order.
+ */
+public class OrderRingBuffer {
+    private final OrderRequest[] entries;
+    private final AtomicLongArray availableSequence;
+    private final int mask;
+    private final AtomicLong claimSequence = new AtomicLong(0);
+    private volatile long consumerSequence = 0;
+
+    public OrderRingBuffer(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.entries = new OrderRequest[capacity];
+        this.availableSequence = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            availableSequence.set(i, -1);
+        }
+    }
+
+    // Called from any producer thread. Returns false if the buffer is full.
+    public boolean offer(OrderRequest order) {
+        long sequence;
+        do {
+            sequence = claimSequence.get();
+            if (sequence - consumerSequence >= entries.length) {
+                return false;
+            }
+        } while (!claimSequence.compareAndSet(sequence, sequence + 1));
+
+        int index = (int) sequence & mask;
+        entries[index] = order;
+        availableSequence.lazySet(index, sequence);
+        return true;
+    }
+
+    // Only the single consumer thread may call this. Returns null if nothing is published yet.
+    public OrderRequest poll() {
+        long sequence = consumerSequence;
+        int index = (int) sequence & mask;
+        if (availableSequence.get(index) != sequence) {
+            return null;
+        }
+        OrderRequest order = entries[index];
+        entries[index] = null;
+        consumerSequence = sequence + 1;
+        return order;
+    }
+
+    public boolean isEmpty() {
+        return availableSequence.get((int) consumerSequence & mask) != consumerSequence;
+    }
+
+    public int capacity() {
+        return entries.length;
+    }
+}
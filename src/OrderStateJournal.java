@@ -0,0 +1,409 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/*
+ * Memory-mapped write-ahead journal of order state changes.
+ * Every accepted New/Modify/Cancel, every transmission, every exchange
+ * response, every in-flight timeout and every New the session failed to
+ * put on the wire is appended as a fixed 40-byte
+ * record into a MappedByteBuffer, so an append is a handful of plain
+ * memory writes (the OS pages it out).
+ * On startup replay() walks the records in order and lets OrderManagement
+ * rebuild its pending queue and in-flight map.
+ *
+ * The file is zero-filled past the last record, so a record whose type byte
+ * is 0 marks the end. The type byte is written last, which means a record
+ * cut short by a crash is never replayed.
+ *
+ * When the mapping fills up the journal is compacted: the Checkpointer
+ * (OrderManagement) writes records recreating just the current state into
+ * a fresh file, which then atomically replaces the old one. Only if that
+ * leaves it more than half full is the mapping doubled, so the file tracks
+ * the live order count rather than the day's traffic; a single mapping
+ * caps it at 2 GB. Compaction is synchronous - the append that fills the
+ * mapping waits for the checkpoint write, force() and rename while the
+ * caller holds stateLock - so the initial size decides how often, and when
+ * in the day, that stall happens. If the journal can neither compact nor
+ * grow it reports once on stderr and drops further appends (isFailed()) -
+ * it never throws into the caller's hot path.
+ * Not thread safe - OrderManagement appends while holding stateLock.
+ *
+ * Record layout (little endian):
+ *   0  byte  record type (RECORD_* below)
+ *   1  byte  side (requests, sent, cancel not sent), or RequestType ordinal answered (responses)
+ *   2  byte  ResponseType ordinal
+ *   3  byte  price format (PRICE_DOUBLE, or PRICE_FIXED_POINT for m_fixedPrice)
+ *   4  int   symbolId
+ *   8  long  orderId
+ *   16 long  price (double bits, or the fixed-point price)
+ *   24 long  qty
+ *   32 long  timestamp (epoch millis)
+ */
+public class OrderStateJournal {
+    public static final int RECORD_SIZE = 40;
+    public static final byte RECORD_NEW = 1;
+    public static final byte RECORD_MODIFY = 2;
+    public static final byte RECORD_CANCEL = 3;
+    public static final byte RECORD_SENT = 4;
+    public static final byte RECORD_RESPONSE = 5;
+    public static final byte RECORD_TIMEOUT = 6;
+    public static final byte RECORD_NOT_SENT = 7;
+    public static final byte RECORD_CANCEL_NOT_SENT = 8;
+    public static final byte PRICE_DOUBLE = 0;
+    public static final byte PRICE_FIXED_POINT = 1;
+
+    private static final long MAX_RECORDS = Integer.MAX_VALUE / RECORD_SIZE; // one mapping
+    private static final int NO_ROOM = -1;
+
+    // Callbacks used by replay(), in journal order
+    public interface RecoveryListener {
+        void onNew(OrderRequest order);
+
+        // Only the price matching the recorded format is set; the other is 0
+        void onModify(long orderId, double price, long fixedPrice, long qty);
+
+        void onCancel(long orderId);
+
+        // side is 0 in records from before it was journaled
+        void onSent(long orderId, int symbolId, char side, long sentTimeMillis);
+
+        void onResponse(long orderId, RequestType answered, ResponseType responseType);
+
+        // The order got no response within the in-flight timeout
+        void onTimeout(long orderId);
+
+        // The New was recorded as sent but never reached the exchange
+        void onNotSent(long orderId);
+
+        // A Cancel never reached the exchange: the order is live again
+        void onCancelNotSent(long orderId, int symbolId, char side);
+    }
+
+    // Appends the records that recreate the current state, as if from an empty journal
+    public interface Checkpointer {
+        void writeCheckpoint(OrderStateJournal journal);
+    }
+
+    private final Path file;
+    private final long initialRecords;
+    private final boolean fixedPointPrices;
+    private FileChannel channel;
+    private MappedByteBuffer mapped;
+    private long capacityRecords;
+    private long recordCount;
+    private Checkpointer checkpointer;
+    private boolean compacting;
+    private boolean failed;
+
+    public OrderStateJournal(Path file, long initialRecords) {
+        this(file, initialRecords, false);
+    }
+
+    // fixedPointPrices: journal m_fixedPrice instead of m_price
+    public OrderStateJournal(Path file, long initialRecords, boolean fixedPointPrices) {
+        this.file = file;
+        this.initialRecords = initialRecords;
+        this.fixedPointPrices = fixedPointPrices;
+        try {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long existingRecords = channel.size() / RECORD_SIZE;
+            map(Math.max(initialRecords, existingRecords));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open order journal " + file, e);
+        }
+        // Find the append position (first empty record)
+        while (recordCount < capacityRecords && typeAt(recordCount) != 0) {
+            recordCount++;
+        }
+    }
+
+    public void appendRequest(OrderRequest order) {
+        byte type;
+        switch (order.m_requestType) {
+            case New:
+                type = RECORD_NEW;
+                break;
+            case Modify:
+                type = RECORD_MODIFY;
+                break;
+            case Cancel:
+                type = RECORD_CANCEL;
+                break;
+            default:
+                return;
+        }
+        int offset = claim();
+        if (offset == NO_ROOM) {
+            return;
+        }
+        mapped.put(offset + 1, (byte) order.m_side);
+        mapped.putInt(offset + 4, order.m_symbolId);
+        mapped.putLong(offset + 8, order.m_orderId);
+        if (fixedPointPrices) {
+            mapped.put(offset + 3, PRICE_FIXED_POINT);
+            mapped.putLong(offset + 16, order.m_fixedPrice);
+        } else {
+            mapped.putLong(offset + 16, Double.doubleToRawLongBits(order.m_price));
+        }
+        mapped.putLong(offset + 24, order.m_qty);
+        mapped.putLong(offset + 32, System.currentTimeMillis());
+        mapped.put(offset, type);
+    }
+
+    public void appendSent(long orderId, int symbolId, char side, long sentTimeMillis) {
+        int offset = claim();
+        if (offset == NO_ROOM) {
+            return;
+        }
+        mapped.put(offset + 1, (byte) side);
+        mapped.putInt(offset + 4, symbolId);
+        mapped.putLong(offset + 8, orderId);
+        mapped.putLong(offset + 32, sentTimeMillis);
+        mapped.put(offset, RECORD_SENT);
+    }
+
+    public void appendResponse(OrderResponse response) {
+        int offset = claim();
+        if (offset == NO_ROOM) {
+            return;
+        }
+        mapped.put(offset + 1, (byte) (response.m_requestType != null ? response.m_requestType.ordinal() : 0));
+        mapped.put(offset + 2, (byte) response.m_responseType.ordinal());
+        mapped.putLong(offset + 8, response.m_orderId);
+        mapped.putLong(offset + 32, System.currentTimeMillis());
+        mapped.put(offset, RECORD_RESPONSE);
+    }
+
+    public void appendTimeout(long orderId) {
+        int offset = claim();
+        if (offset == NO_ROOM) {
+            return;
+        }
+        mapped.putLong(offset + 8, orderId);
+        mapped.putLong(offset + 32, System.currentTimeMillis());
+        mapped.put(offset, RECORD_TIMEOUT);
+    }
+
+    public void appendNotSent(long orderId) {
+        int offset = claim();
+        if (offset == NO_ROOM) {
+            return;
+        }
+        mapped.putLong(offset + 8, orderId);
+        mapped.putLong(offset + 32, System.currentTimeMillis());
+        mapped.put(offset, RECORD_NOT_SENT);
+    }
+
+    public void appendCancelNotSent(long orderId, int symbolId, char side) {
+        int offset = claim();
+        if (offset == NO_ROOM) {
+            return;
+        }
+        mapped.put(offset + 1, (byte) side);
+        mapped.putInt(offset + 4, symbolId);
+        mapped.putLong(offset + 8, orderId);
+        mapped.putLong(offset + 32, System.currentTimeMillis());
+        mapped.put(offset, RECORD_CANCEL_NOT_SENT);
+    }
+
+    // Replays every complete record; returns the number replayed
+    public long replay(RecoveryListener listener) {
+        RequestType[] requestTypes = RequestType.values();
+        ResponseType[] responseTypes = ResponseType.values();
+        for (long i = 0; i < recordCount; i++) {
+            int offset = (int) (i * RECORD_SIZE);
+            long orderId = mapped.getLong(offset + 8);
+            boolean fixedPoint = mapped.get(offset + 3) == PRICE_FIXED_POINT;
+            long priceBits = mapped.getLong(offset + 16);
+            switch (mapped.get(offset)) {
+                case RECORD_NEW:
+                    OrderRequest order = new OrderRequest();
+                    order.m_requestType = RequestType.New;
+                    order.m_side = (char) mapped.get(offset + 1);
+                    order.m_symbolId = mapped.getInt(offset + 4);
+                    order.m_orderId = orderId;
+                    if (fixedPoint) {
+                        order.m_fixedPrice = priceBits;
+                    } else {
+                        order.m_price = Double.longBitsToDouble(priceBits);
+                    }
+                    order.m_qty = mapped.getLong(offset + 24);
+                    listener.onNew(order);
+                    break;
+                case RECORD_MODIFY:
+                    listener.onModify(orderId, fixedPoint ? 0.0 : Double.longBitsToDouble(priceBits),
+                            fixedPoint ? priceBits : 0, mapped.getLong(offset + 24));
+                    break;
+                case RECORD_CANCEL:
+                    listener.onCancel(orderId);
+                    break;
+                case RECORD_SENT:
+                    listener.onSent(orderId, mapped.getInt(offset + 4), (char) mapped.get(offset + 1),
+                            mapped.getLong(offset + 32));
+                    break;
+                case RECORD_RESPONSE:
+                    listener.onResponse(orderId, requestTypes[mapped.get(offset + 1)],
+                            responseTypes[mapped.get(offset + 2)]);
+                    break;
+                case RECORD_TIMEOUT:
+                    listener.onTimeout(orderId);
+                    break;
+                case RECORD_NOT_SENT:
+                    listener.onNotSent(orderId);
+                    break;
+                case RECORD_CANCEL_NOT_SENT:
+                    listener.onCancelNotSent(orderId, mapped.getInt(offset + 4), (char) mapped.get(offset + 1));
+                    break;
+                default:
+                    break;
+            }
+        }
+        return recordCount;
+    }
+
+    public long recordCount() {
+        return recordCount;
+    }
+
+    // Compacts the journal whenever it fills up (see the class comment)
+    public void setCheckpointer(Checkpointer checkpointer) {
+        this.checkpointer = checkpointer;
+    }
+
+    // Compacts now, e.g. after recovery so a restart starts from a short file.
+    // Returns false if it failed (the old journal is kept).
+    public boolean checkpoint() {
+        if (checkpointer == null || failed) {
+            return false;
+        }
+        try {
+            compact();
+            return true;
+        } catch (IOException e) {
+            System.err.println("Order journal checkpoint failed: " + e);
+            return false;
+        }
+    }
+
+    // True once appends are being dropped because the journal could not make room
+    public boolean isFailed() {
+        return failed;
+    }
+
+    // Forces mapped pages to disk (survives an OS crash, not just a JVM crash)
+    public void force() {
+        mapped.force();
+    }
+
+    public void close() {
+        force();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private int claim() {
+        if (recordCount == capacityRecords && !makeRoom()) {
+            return NO_ROOM;
+        }
+        return (int) (recordCount++ * RECORD_SIZE);
+    }
+
+    private boolean makeRoom() {
+        if (failed) {
+            return false;
+        }
+        if (compacting) {
+            try {
+                grow(); // the checkpoint itself outgrew the fresh file
+                return true;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e); // aborts the compaction, see compact()
+            }
+        }
+        if (checkpointer != null) {
+            try {
+                compact();
+                if (recordCount <= capacityRecords / 2) {
+                    return true;
+                }
+            } catch (IOException e) {
+                System.err.println("Order journal compaction failed: " + e);
+            }
+        }
+        try {
+            grow();
+            return true;
+        } catch (IOException e) {
+            if (recordCount < capacityRecords) {
+                return true; // compacted but can't grow: carry on in what is left
+            }
+            failed = true;
+            System.err.println("Order journal full, appends dropped - recovery will be incomplete: " + e);
+            return false;
+        }
+    }
+
+    private void grow() throws IOException {
+        if (capacityRecords * 2 > MAX_RECORDS) {
+            throw new IOException("Order journal exceeds a single mapping: " + capacityRecords * 2 + " records");
+        }
+        map(capacityRecords * 2);
+    }
+
+    // Writes the checkpoint into <file>.compact and moves it over the journal.
+    // On failure the old journal stays in place and in use.
+    private void compact() throws IOException {
+        Path compacted = file.resolveSibling(file.getFileName() + ".compact");
+        FileChannel oldChannel = channel;
+        MappedByteBuffer oldMapped = mapped;
+        long oldCapacity = capacityRecords;
+        long oldCount = recordCount;
+        FileChannel newChannel = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel = newChannel;
+        recordCount = 0;
+        compacting = true;
+        try {
+            map(initialRecords);
+            checkpointer.writeCheckpoint(this);
+            mapped.force();
+            Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | UncheckedIOException e) {
+            newChannel.close();
+            Files.deleteIfExists(compacted);
+            channel = oldChannel;
+            mapped = oldMapped;
+            capacityRecords = oldCapacity;
+            recordCount = oldCount;
+            throw e instanceof UncheckedIOException ? ((UncheckedIOException) e).getCause() : (IOException) e;
+        } finally {
+            compacting = false;
+        }
+        oldChannel.close(); // the old mapping is released when it is collected
+    }
+
+    private byte typeAt(long record) {
+        return mapped.get((int) (record * RECORD_SIZE));
+    }
+
+    private void map(long records) throws IOException {
+        long bytes = records * RECORD_SIZE;
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IOException("Order journal exceeds a single mapping: " + records + " records");
+        }
+        mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+        mapped.order(ByteOrder.LITTLE_ENDIAN);
+        capacityRecords = records;
+    }
+}
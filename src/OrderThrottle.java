@@ -0,0 +1,28 @@
+/*
+ * Outbound order rate limiter.
+ * All implementations work off System.nanoTime() values passed in by the
+ * caller. Apart from SharedRateLimiter they are not thread safe -
+ * OrderManagement only uses them while holding stateLock.
+ */
+public interface OrderThrottle {
+    long NANOS_PER_SECOND = 1_000_000_000L;
+
+    // Consumes one permit if available at the given time
+    boolean tryAcquire(long nowNanos);
+
+    // True if tryAcquire would succeed at the given time; consumes nothing
+    boolean canAcquire(long nowNanos);
+
+    static OrderThrottle create(ThrottleType type, int maxPerSecond, int burst) {
+        switch (type) {
+            case TokenBucket:
+                return new TokenBucketThrottle(maxPerSecond, burst);
+            case LeakyBucket:
+                return new LeakyBucketThrottle(maxPerSecond);
+            case SlidingWindowLog:
+                return new SlidingWindowLogThrottle(maxPerSecond, NANOS_PER_SECOND);
+            default:
+                throw new IllegalArgumentException("Unsupported throttle type: " + type);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * FIFO of orders backed by a doubly-linked list whose nodes are handed
+ * back to the caller. Holding on to the node (via queuedAmends) lets a
+ * rejected order's amend be unlinked in O(1) instead of scanning the lane.
+ * Unlinked nodes go onto a free list and are reused, so a steady queue does
+ * not allocate. Not thread safe - guarded by OrderManagement.stateLock.
+ */
+public class PendingOrderQueue {
+    public static final class Node {
+        private OrderRequest order;
+        private Node prev;
+        private Node next;
+
+        public OrderRequest order() {
+            return order;
+        }
+    }
+
+    private Node head;
+    private Node tail;
+    private Node freeList;
+    private int size;
+
+    public Node add(OrderRequest order) {
+        Node node = freeList;
+        if (node != null) {
+            freeList = node.next;
+            node.next = null;
+        } else {
+            node = new Node();
+        }
+        node.order = order;
+        node.prev = tail;
+        if (tail != null) {
+            tail.next = node;
+        } else {
+            head = node;
+        }
+        tail = node;
+        size++;
+        return node;
+    }
+
+    public OrderRequest peek() {
+        return head != null ? head.order : null;
+    }
+
+    public OrderRequest poll() {
+        Node node = head;
+        if (node == null) {
+            return null;
+        }
+        OrderRequest order = node.order;
+        remove(node);
+        return order;
+    }
+
+    // Node must currently be in this queue
+    public void remove(Node node) {
+        if (node.prev != null) {
+            node.prev.next = node.next;
+        } else {
+            head = node.next;
+        }
+        if (node.next != null) {
+            node.next.prev = node.prev;
+        } else {
+            tail = node.prev;
+        }
+        size--;
+
+        node.order = null;
+        node.prev = null;
+        node.next = freeList;
+        freeList = node;
+    }
+
+    public boolean isEmpty() {
+        return head == null;
+    }
+
+    public int size() {
+        return size;
+    }
+}
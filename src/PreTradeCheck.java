@@ -0,0 +1,16 @@
+/*
+ * One pre-trade risk check in a PreTradeRiskChain.
+ * Runs on the OMS hot path under stateLock, so it must be quick and must
+ * not allocate or block - implementations keep their limits in primitive
+ * tables indexed by m_symbolId.
+ */
+public interface PreTradeCheck {
+    // Shown next to the check's rejection counter
+    String name();
+
+    // price is the order's price in fixed-point units of the chain's PriceScales
+    boolean accept(OrderRequest order, long price);
+
+    // Number of symbols the tables cover; OrderManagement refuses a chain smaller than config.symbolCapacity
+    int symbolCapacity();
+}
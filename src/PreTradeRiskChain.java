@@ -0,0 +1,78 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * Ordered chain of pre-trade risk checks run on every New before it is
+ * throttled or queued. The first check that fails rejects the order and
+ * bumps that check's rejection counter; the checks after it don't run.
+ *
+ * Checks see the price as a fixed-point long in the chain's PriceScales:
+ * m_fixedPrice as is when the OMS runs with fixed-point prices (the chain
+ * must then use the config's PriceScales), otherwise m_price converted
+ * once up front. Every limit comparison is integer arithmetic and
+ * evaluating the chain allocates nothing.
+ *
+ * Every table (the PriceScales and each check's) is indexed by m_symbolId,
+ * so OrderManagement only takes a chain whose symbolCapacity() covers
+ * config.symbolCapacity, and rejects symbols outside that before evaluate.
+ *
+ * Add all checks before handing the chain to OrderManagement. Evaluation is
+ * thread safe as long as the checks are, so ShardedOrderManagement shards
+ * can share one chain (and its counters).
+ */
+public class PreTradeRiskChain {
+    public static final int ACCEPTED = -1;
+
+    private final PriceScales priceScales;
+    private PreTradeCheck[] checks = new PreTradeCheck[0];
+    private AtomicLongArray rejections = new AtomicLongArray(0);
+
+    public PreTradeRiskChain(PriceScales priceScales) {
+        this.priceScales = priceScales;
+    }
+
+    // Checks run in the order they were added
+    public PreTradeRiskChain add(PreTradeCheck check) {
+        checks = Arrays.copyOf(checks, checks.length + 1);
+        checks[checks.length - 1] = check;
+        rejections = new AtomicLongArray(checks.length);
+        return this;
+    }
+
+    public PriceScales priceScales() {
+        return priceScales;
+    }
+
+    // Index of the check that rejected the order, or ACCEPTED
+    public int evaluate(OrderRequest order, boolean fixedPointPrices) {
+        long price = fixedPointPrices ? order.m_fixedPrice : priceScales.toFixed(order.m_symbolId, order.m_price);
+        for (int i = 0; i < checks.length; i++) {
+            if (!checks[i].accept(order, price)) {
+                rejections.incrementAndGet(i);
+                return i;
+            }
+        }
+        return ACCEPTED;
+    }
+
+    public int size() {
+        return checks.length;
+    }
+
+    // Symbols every table in the chain covers
+    public int symbolCapacity() {
+        int capacity = priceScales.symbolCapacity();
+        for (PreTradeCheck check : checks) {
+            capacity = Math.min(capacity, check.symbolCapacity());
+        }
+        return capacity;
+    }
+
+    public String name(int index) {
+        return checks[index].name();
+    }
+
+    public long rejections(int index) {
+        return rejections.get(index);
+    }
+}
@@ -0,0 +1,38 @@
+import java.util.Arrays;
+
+/*
+ * Rejects orders priced outside the symbol's static [low, high] band
+ * (fixed-point units). Symbols without a band accept any positive price.
+ */
+public class PriceBandCheck implements PreTradeCheck {
+    private final long[] low;
+    private final long[] high;
+
+    public PriceBandCheck(int symbolCapacity) {
+        this.low = new long[symbolCapacity];
+        this.high = new long[symbolCapacity];
+        Arrays.fill(low, 1);
+        Arrays.fill(high, Long.MAX_VALUE);
+    }
+
+    public PriceBandCheck set(int symbolId, long lowPrice, long highPrice) {
+        low[symbolId] = lowPrice;
+        high[symbolId] = highPrice;
+        return this;
+    }
+
+    @Override
+    public int symbolCapacity() {
+        return low.length;
+    }
+
+    @Override
+    public String name() {
+        return "PriceBand";
+    }
+
+    @Override
+    public boolean accept(OrderRequest order, long price) {
+        return price >= low[order.m_symbolId] && price <= high[order.m_symbolId];
+    }
+}
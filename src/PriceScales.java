@@ -0,0 +1,88 @@
+import java.util.Arrays;
+
+/*
+ * Decimal scale of each symbol's fixed-point prices. In fixed-point mode
+ * (OrderManagementConfig.priceScales set) OrderRequest.m_fixedPrice carries
+ * the price times 10^scale of its symbol - with scale 2, 101.25 is 10125 -
+ * so prices compare, hash and go on the wire as exact longs and the hot
+ * path never touches floating point. The conversions here are for the
+ * edges (order entry, display), not for the hot path.
+ *
+ * Scales live in a byte table indexed directly by m_symbolId. Set them up
+ * before the table is handed to OrderManagement; it is read without locks.
+ */
+public class PriceScales {
+    public static final int MAX_SCALE = 18; // 10^18 still fits in a long
+    public static final long NOT_REPRESENTABLE = Long.MIN_VALUE;
+
+    private static final long[] POWERS_OF_TEN = new long[MAX_SCALE + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i <= MAX_SCALE; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final byte[] scales;
+
+    public PriceScales(int symbolCapacity, int defaultScale) {
+        this.scales = new byte[symbolCapacity];
+        Arrays.fill(scales, checkScale(defaultScale));
+    }
+
+    public PriceScales set(int symbolId, int scale) {
+        scales[symbolId] = checkScale(scale);
+        return this;
+    }
+
+    public boolean isValidSymbol(int symbolId) {
+        return symbolId >= 0 && symbolId < scales.length;
+    }
+
+    public int symbolCapacity() {
+        return scales.length;
+    }
+
+    public int scale(int symbolId) {
+        return scales[symbolId];
+    }
+
+    // Nearest representable price; anything finer than the scale is rounded away
+    public long toFixed(int symbolId, double price) {
+        return Math.round(price * POWERS_OF_TEN[scales[symbolId]]);
+    }
+
+    public double toDouble(int symbolId, long fixedPrice) {
+        return (double) fixedPrice / POWERS_OF_TEN[scales[symbolId]];
+    }
+
+    // The same price at another scale, or NOT_REPRESENTABLE when it is finer
+    // than toScale allows or overflows a long - never silently rounded
+    public static long rescale(long fixedPrice, int fromScale, int toScale) {
+        if (fromScale < 0 || fromScale > MAX_SCALE || toScale < 0 || toScale > MAX_SCALE) {
+            return NOT_REPRESENTABLE;
+        }
+        if (fromScale == toScale) {
+            return fixedPrice;
+        }
+        if (fromScale > toScale) {
+            long divisor = POWERS_OF_TEN[fromScale - toScale];
+            return fixedPrice % divisor == 0 ? fixedPrice / divisor : NOT_REPRESENTABLE;
+        }
+        long multiplier = POWERS_OF_TEN[toScale - fromScale];
+        long scaled = fixedPrice * multiplier;
+        return scaled / multiplier == fixedPrice ? scaled : NOT_REPRESENTABLE;
+    }
+
+    public static long powerOfTen(int scale) {
+        return POWERS_OF_TEN[scale];
+    }
+
+    private static byte checkScale(int scale) {
+        if (scale < 0 || scale > MAX_SCALE) {
+            throw new IllegalArgumentException("Price scale must be in [0, " + MAX_SCALE + "]: " + scale);
+        }
+        return (byte) scale;
+    }
+}
@@ -0,0 +1,3 @@
+public enum RejectReason {
+    Unknown, OutsideTradingHours, IngressFull, UnsupportedRequest, InvalidSymbol, RiskLimit, InvalidPrice, NotTransmitted
+}
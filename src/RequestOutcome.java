@@ -0,0 +1,3 @@
+public enum RequestOutcome {
+    Unknown, Sent, Queued, Modified, Cancelled, NotFound, Published, Rejected
+}
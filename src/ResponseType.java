@@ -1,3 +1,3 @@
 public enum ResponseType {
-    Unknown, Accept, Reject
+    Unknown, Accept, Reject, Filled
 }
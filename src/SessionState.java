@@ -0,0 +1,3 @@
+public enum SessionState {
+    Disconnected, Connecting, LogonSent, LoggedOn, LogoutSent
+}
@@ -0,0 +1,174 @@
+import java.net.InetSocketAddress;
+import java.nio.file.Paths;
+
+/*
+ * Sharded Order Management
+ * ------------------------
+ * Runs N independent OrderManagement shards and partitions orders between
+ * them by m_symbolId, so different instruments are processed on different
+ * cores. Each shard runs in IngressMode.RingBuffer, i.e. a single ingress
+ * thread owns that shard's queues, order lookup and per-symbol throttles,
+ * and gateway threads never share a lock across shards.
+ *
+ * The exchange rate limit is per session, so all shards draw from one
+ * SharedRateLimiter (lock-free GCRA) acting as the global coordinator.
+ *
+ * Routing rules:
+ * - New/Modify/Cancel go to the shard owning m_symbolId, so Modify/Cancel
+ *   must carry the same m_symbolId as the original New.
+ * - Responses are routed by OrderResponse.m_symbolId, which the exchange
+ *   echoes back.
+ *
+ * Shard configs are shallow copies of the template, so anything it points
+ * to is shared by all shards:
+ * - Shared: eventSink (one thread safe sink, closed once by stop()),
+ *   preTradeChecks, priceScales, tradingSchedule and the global throttle
+ *   above, plus the template scheduler if one is set.
+ * - Per shard: eventJournalPath and orderJournalPath (suffixed ".shard<i>"),
+ *   the default event journal file, the exchange session and, when the
+ *   template scheduler is null, a TimingWheelScheduler of its own - so one
+ *   shard's drain, transmit flush and timeout sweep never wait behind
+ *   another's on the JVM-wide ticker. stop() shuts these down. An
+ *   ExchangeSession carries one shard's orders only, so template
+ *   exchangeAddress must be null; connect shards with the constructor taking
+ *   one address per shard.
+ */
+public class ShardedOrderManagement {
+    private final OrderManagement[] shards;
+    private final OmsEventSink sharedSink;
+    private final TimingWheelScheduler[] schedulers; // owned per shard; null entries use the template's
+
+    public ShardedOrderManagement(OrderManagementConfig template, int shardCount) {
+        this(template, shardCount, null);
+    }
+
+    // Shard i logs on to exchangeAddresses[i]
+    public ShardedOrderManagement(OrderManagementConfig template, InetSocketAddress[] exchangeAddresses) {
+        this(template, exchangeAddresses.length, exchangeAddresses);
+    }
+
+    private ShardedOrderManagement(OrderManagementConfig template, int shardCount,
+                                   InetSocketAddress[] exchangeAddresses) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Shard count must be positive: " + shardCount);
+        }
+        if (template.exchangeAddress != null) {
+            throw new IllegalArgumentException("Shards can't share one exchange session ("
+                    + template.exchangeAddress + "); pass one address per shard instead");
+        }
+        int burst = template.throttleBurst > 0 ? template.throttleBurst : template.maxOrdersPerSecond;
+        OrderThrottle coordinator = template.globalThrottle != null
+                ? template.globalThrottle
+                : new SharedRateLimiter(template.maxOrdersPerSecond, burst);
+
+        sharedSink = template.eventSink;
+        OmsEventSink shardSink = sharedSink != null ? new UnclosedSink(sharedSink) : null;
+
+        shards = new OrderManagement[shardCount];
+        schedulers = new TimingWheelScheduler[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            OrderManagementConfig config = template.copy();
+            config.ingressMode = IngressMode.RingBuffer;
+            config.globalThrottle = coordinator;
+            config.eventSink = shardSink;
+            config.exchangeAddress = exchangeAddresses != null ? exchangeAddresses[i] : null;
+            if (template.scheduler == null && template.executionMode != ExecutionMode.VirtualThreads) {
+                schedulers[i] = new TimingWheelScheduler(TimingWheelScheduler.DEFAULT_TICK_NANOS,
+                        TimingWheelScheduler.DEFAULT_WHEEL_SIZE, "oms-timing-wheel-shard" + i);
+                config.scheduler = schedulers[i];
+            }
+            if (template.eventJournalPath != null) {
+                config.eventJournalPath = Paths.get(template.eventJournalPath + ".shard" + i);
+            }
+            if (template.orderJournalPath != null) {
+                config.orderJournalPath = Paths.get(template.orderJournalPath + ".shard" + i);
+            }
+            shards[i] = new OrderManagement(config);
+        }
+    }
+
+    public void onData(OrderRequest order) {
+        shardFor(order.m_symbolId).onData(order);
+    }
+
+    public void onData(OrderResponse response) {
+        shardFor(response.m_symbolId).onData(response);
+    }
+
+    public OrderManagement shardFor(int symbolId) {
+        return shards[Math.floorMod(symbolId, shards.length)];
+    }
+
+    public int shardCount() {
+        return shards.length;
+    }
+
+    public int pendingOrderCount() {
+        int total = 0;
+        for (OrderManagement shard : shards) {
+            total += shard.pendingOrderCount();
+        }
+        return total;
+    }
+
+    public int inFlightOrderCount() {
+        int total = 0;
+        for (OrderManagement shard : shards) {
+            total += shard.inFlightOrderCount();
+        }
+        return total;
+    }
+
+    public void stop() {
+        for (OrderManagement shard : shards) {
+            shard.stop();
+        }
+        for (TimingWheelScheduler scheduler : schedulers) {
+            if (scheduler != null) {
+                scheduler.shutdown();
+            }
+        }
+        if (sharedSink != null) {
+            sharedSink.close();
+        }
+    }
+
+    // Keeps a shard's stop() from closing the sink the other shards still use
+    private static final class UnclosedSink implements OmsEventSink {
+        private final OmsEventSink sink;
+
+        UnclosedSink(OmsEventSink sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public void onOrderSent(OrderRequest order) {
+            sink.onOrderSent(order);
+        }
+
+        @Override
+        public void onOrderRejected(OrderRequest order, RejectReason reason) {
+            sink.onOrderRejected(order, reason);
+        }
+
+        @Override
+        public void onResponse(OrderResponse response, long latencyNanos) {
+            sink.onResponse(response, latencyNanos);
+        }
+
+        @Override
+        public void onOrderTimeout(long orderId, int symbolId, long ageNanos) {
+            sink.onOrderTimeout(orderId, symbolId, ageNanos);
+        }
+
+        @Override
+        public void onLogon() {
+            sink.onLogon();
+        }
+
+        @Override
+        public void onLogout() {
+            sink.onLogout();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Thread-safe token bucket for sharing one rate limit between several
+ * OrderManagement shards (the exchange limit is per session, not per shard).
+ * Implemented as GCRA: the whole state is a single "theoretical arrival
+ * time" updated with a CAS, so shards never block each other.
+ */
+public class SharedRateLimiter implements OrderThrottle {
+    private final long intervalNanos;
+    private final long burstToleranceNanos;
+    private final AtomicLong theoreticalArrival;
+
+    public SharedRateLimiter(int maxPerSecond, int burst) {
+        if (maxPerSecond <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("Rate and burst must be positive");
+        }
+        this.intervalNanos = (NANOS_PER_SECOND + maxPerSecond - 1) / maxPerSecond;
+        this.burstToleranceNanos = intervalNanos * burst;
+        // Start with a full bucket
+        this.theoreticalArrival = new AtomicLong(System.nanoTime() - burstToleranceNanos);
+    }
+
+    @Override
+    public boolean tryAcquire(long nowNanos) {
+        while (true) {
+            long arrival = theoreticalArrival.get();
+            long next = Math.max(arrival, nowNanos - burstToleranceNanos) + intervalNanos;
+            if (next - nowNanos > 0) {
+                return false;
+            }
+            if (theoreticalArrival.compareAndSet(arrival, next)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public boolean canAcquire(long nowNanos) {
+        long arrival = theoreticalArrival.get();
+        return Math.max(arrival, nowNanos - burstToleranceNanos) + intervalNanos - nowNanos <= 0;
+    }
+}
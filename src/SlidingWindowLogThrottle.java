@@ -0,0 +1,41 @@
+/*
+ * Sliding window log.
+ * Keeps the send time of the last maxPerWindow orders in a circular array, so
+ * any window of windowNanos contains at most maxPerWindow orders - this is
+ * the strictest match for an exchange "N per rolling second" rule.
+ */
+public class SlidingWindowLogThrottle implements OrderThrottle {
+    private final long windowNanos;
+    private final long[] sendTimes;
+    private int oldest = 0;
+    private int count = 0;
+
+    public SlidingWindowLogThrottle(int maxPerWindow, long windowNanos) {
+        if (maxPerWindow <= 0 || windowNanos <= 0) {
+            throw new IllegalArgumentException("Rate and window must be positive");
+        }
+        this.windowNanos = windowNanos;
+        this.sendTimes = new long[maxPerWindow];
+    }
+
+    @Override
+    public boolean tryAcquire(long nowNanos) {
+        if (count == sendTimes.length) {
+            if (nowNanos - sendTimes[oldest] < windowNanos) {
+                return false;
+            }
+            // Oldest entry left the window - reuse its slot
+            sendTimes[oldest] = nowNanos;
+            oldest = (oldest + 1) % sendTimes.length;
+            return true;
+        }
+        sendTimes[(oldest + count) % sendTimes.length] = nowNanos;
+        count++;
+        return true;
+    }
+
+    @Override
+    public boolean canAcquire(long nowNanos) {
+        return count < sendTimes.length || nowNanos - sendTimes[oldest] >= windowNanos;
+    }
+}
@@ -0,0 +1,225 @@
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/*
+ * Per-symbol pending queues with optional per-symbol throttles.
+ * Queued orders live in an OffHeapOrderStore and each symbol's queue is a
+ * FIFO of store slots linked through the store's next/prev columns, so a
+ * queued order is addressed by its slot and no objects are kept per order.
+ * Queue heads/tails and throttles live in arrays indexed directly by
+ * m_symbolId; a symbol's throttle is created the first time it is needed.
+ * Symbols with queued orders sit in a round-robin ring; pollNext() hands
+ * out one order per symbol per turn, so a burst on one instrument only
+ * delays that instrument. Not thread safe - guarded by
+ * OrderManagement.stateLock.
+ */
+public class SymbolOrderQueues {
+    private final ThrottleType throttleType;
+    private final int maxPerSecondPerSymbol;
+    private final int burstPerSymbol;
+    private final int symbolCapacity;
+
+    private final OffHeapOrderStore store;
+    private int[] heads = newSlotArray(64);
+    private int[] tails = newSlotArray(64);
+    private OrderThrottle[] throttles = new OrderThrottle[64];
+    private boolean[] inRotation = new boolean[64];
+
+    // Round-robin ring of symbols that (may) have queued orders
+    private int[] rotation = new int[64];
+    private int rotationHead;
+    private int rotationSize;
+
+    private int size;
+
+    // maxPerSecondPerSymbol <= 0 means symbols are only limited by the global throttle
+    public SymbolOrderQueues(ThrottleType throttleType, int maxPerSecondPerSymbol, int burstPerSymbol,
+                             int symbolCapacity, int expectedOrders) {
+        this.throttleType = throttleType;
+        this.maxPerSecondPerSymbol = maxPerSecondPerSymbol;
+        this.burstPerSymbol = burstPerSymbol > 0 ? burstPerSymbol : Math.max(1, maxPerSecondPerSymbol);
+        this.symbolCapacity = symbolCapacity;
+        this.store = new OffHeapOrderStore(expectedOrders);
+    }
+
+    public boolean isValidSymbol(int symbolId) {
+        return symbolId >= 0 && symbolId < symbolCapacity;
+    }
+
+    public boolean isEmpty(int symbolId) {
+        return symbolId >= heads.length || heads[symbolId] == OffHeapOrderStore.NONE;
+    }
+
+    // Copies the order into the store and queues it; the caller keeps (or
+    // recycles) the OrderRequest. Returns the order's slot.
+    public int add(OrderRequest order) {
+        int symbolId = order.m_symbolId;
+        ensureSymbol(symbolId);
+        int slot = store.allocate(order);
+        int tail = tails[symbolId];
+        store.setPrev(slot, tail);
+        if (tail != OffHeapOrderStore.NONE) {
+            store.setNext(tail, slot);
+        } else {
+            heads[symbolId] = slot;
+        }
+        tails[symbolId] = slot;
+        if (!inRotation[symbolId]) {
+            inRotation[symbolId] = true;
+            rotation[(rotationHead + rotationSize) % rotation.length] = symbolId;
+            rotationSize++;
+        }
+        size++;
+        return slot;
+    }
+
+    public int symbolId(int slot) {
+        return store.symbolId(slot);
+    }
+
+    public char side(int slot) {
+        return store.side(slot);
+    }
+
+    // Changes a queued order in place
+    public void amend(int slot, double price, long fixedPrice, long qty) {
+        store.setPrice(slot, price);
+        store.setFixedPrice(slot, fixedPrice);
+        store.setQty(slot, qty);
+    }
+
+    // Slot must be queued here; a symbol left empty drops out of the rotation lazily
+    public void remove(int slot) {
+        unlink(slot);
+        store.free(slot);
+        size--;
+    }
+
+    // Sending right now must pass the symbol throttle as well as the global one
+    public boolean tryAcquireDirect(int symbolId, OrderThrottle globalThrottle, long nowNanos) {
+        OrderThrottle symbolThrottle = throttleFor(symbolId);
+        if (symbolThrottle != null && !symbolThrottle.canAcquire(nowNanos)) {
+            return false;
+        }
+        if (!globalThrottle.tryAcquire(nowNanos)) {
+            return false;
+        }
+        if (symbolThrottle != null) {
+            symbolThrottle.tryAcquire(nowNanos);
+        }
+        return true;
+    }
+
+    // Copies the next order to send in round-robin symbol order into 'into'
+    // and frees its slot. Returns false if the global throttle is exhausted or
+    // every queued symbol is at its own limit. Permits for the order have
+    // already been taken.
+    public boolean pollNext(OrderThrottle globalThrottle, long nowNanos, OrderRequest into) {
+        int checked = 0;
+        while (checked < rotationSize && globalThrottle.canAcquire(nowNanos)) {
+            int symbolId = rotation[rotationHead];
+            rotationHead = (rotationHead + 1) % rotation.length;
+            rotationSize--;
+
+            int slot = heads[symbolId];
+            if (slot == OffHeapOrderStore.NONE) {
+                inRotation[symbolId] = false;
+                continue;
+            }
+            if (tryAcquireDirect(symbolId, globalThrottle, nowNanos)) {
+                store.copyTo(slot, into);
+                remove(slot);
+                requeue(symbolId);
+                return true;
+            }
+            requeue(symbolId);
+            checked++;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Copies every queued order into 'into' and hands it to the consumer,
+    // symbol by symbol in queue order. The queues must not change meanwhile.
+    public void forEachQueued(OrderRequest into, Consumer<OrderRequest> consumer) {
+        for (int symbolId = 0; symbolId < heads.length; symbolId++) {
+            for (int slot = heads[symbolId]; slot != OffHeapOrderStore.NONE; slot = store.next(slot)) {
+                store.copyTo(slot, into);
+                consumer.accept(into);
+            }
+        }
+    }
+
+    public long storeFootprintBytes() {
+        return store.footprintBytes();
+    }
+
+    private void unlink(int slot) {
+        int symbolId = store.symbolId(slot);
+        int before = store.prev(slot);
+        int after = store.next(slot);
+        if (before != OffHeapOrderStore.NONE) {
+            store.setNext(before, after);
+        } else {
+            heads[symbolId] = after;
+        }
+        if (after != OffHeapOrderStore.NONE) {
+            store.setPrev(after, before);
+        } else {
+            tails[symbolId] = before;
+        }
+    }
+
+    private void requeue(int symbolId) {
+        if (heads[symbolId] == OffHeapOrderStore.NONE) {
+            inRotation[symbolId] = false;
+            return;
+        }
+        rotation[(rotationHead + rotationSize) % rotation.length] = symbolId;
+        rotationSize++;
+    }
+
+    private OrderThrottle throttleFor(int symbolId) {
+        if (maxPerSecondPerSymbol <= 0) {
+            return null;
+        }
+        ensureSymbol(symbolId);
+        OrderThrottle throttle = throttles[symbolId];
+        if (throttle == null) {
+            throttle = OrderThrottle.create(throttleType, maxPerSecondPerSymbol, burstPerSymbol);
+            throttles[symbolId] = throttle;
+        }
+        return throttle;
+    }
+
+    private void ensureSymbol(int symbolId) {
+        if (symbolId < heads.length) {
+            return;
+        }
+        int oldLength = heads.length;
+        int newLength = Math.min(symbolCapacity, Math.max(symbolId + 1, oldLength * 2));
+        heads = Arrays.copyOf(heads, newLength);
+        tails = Arrays.copyOf(tails, newLength);
+        Arrays.fill(heads, oldLength, newLength, OffHeapOrderStore.NONE);
+        Arrays.fill(tails, oldLength, newLength, OffHeapOrderStore.NONE);
+        throttles = Arrays.copyOf(throttles, newLength);
+        inRotation = Arrays.copyOf(inRotation, newLength);
+
+        // Unroll the rotation ring into the larger array
+        int[] newRotation = new int[newLength];
+        for (int i = 0; i < rotationSize; i++) {
+            newRotation[i] = rotation[(rotationHead + i) % rotation.length];
+        }
+        rotation = newRotation;
+        rotationHead = 0;
+    }
+
+    private static int[] newSlotArray(int length) {
+        int[] slots = new int[length];
+        Arrays.fill(slots, OffHeapOrderStore.NONE);
+        return slots;
+    }
+}
@@ -0,0 +1,3 @@
+public enum ThrottleType {
+    TokenBucket, LeakyBucket, SlidingWindowLog
+}
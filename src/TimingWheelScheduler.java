@@ -0,0 +1,253 @@
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Hashed timing wheel driving periodic and one-shot tasks for any number of
+ * OrderManagement instances from a single ticker thread.
+ *
+ * The wheel is an array of buckets, one per tick; a task sits in the bucket
+ * of its deadline tick with a count of whole wheel rotations still to wait,
+ * so schedule and cancel are O(1) however many tasks there are (a delay
+ * queue pays O(log n) per operation). New tasks reach the ticker through a
+ * lock-free queue and cancellation just flips the task's state - the ticker
+ * unlinks cancelled tasks when it passes their bucket.
+ *
+ * Tasks run on the ticker thread, so they must be short and must not block
+ * for long: one slow task delays every other instance's timers. Deadlines
+ * are rounded up to the tick, and a task that throws is logged and keeps
+ * its schedule.
+ */
+public class TimingWheelScheduler {
+    public static final long DEFAULT_TICK_NANOS = 100_000;
+    public static final int DEFAULT_WHEEL_SIZE = 1024;
+
+    private static final int STATE_SCHEDULED = 0;
+    private static final int STATE_RUNNING = 1;
+    private static final int STATE_CANCELLED = 2;
+
+    // Handle for a scheduled task
+    public static final class Timeout {
+        private final Runnable task;
+        private final long periodNanos; // 0 = one shot
+        private final TimingWheelScheduler owner;
+        private final AtomicInteger state = new AtomicInteger(STATE_SCHEDULED);
+        private long deadline;
+        private long remainingRounds;
+        private int bucket = -1;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(TimingWheelScheduler owner, Runnable task, long deadline, long periodNanos) {
+            this.owner = owner;
+            this.task = task;
+            this.deadline = deadline;
+            this.periodNanos = periodNanos;
+        }
+
+        // Once this returns the task is not running and won't run again
+        // (unless called from the task itself, which just stops later runs).
+        public void cancel() {
+            while (true) {
+                int current = state.get();
+                if (current == STATE_CANCELLED) {
+                    return;
+                }
+                if (current == STATE_RUNNING && Thread.currentThread() != owner.ticker) {
+                    Thread.onSpinWait();
+                    continue;
+                }
+                if (state.compareAndSet(current, STATE_CANCELLED)) {
+                    owner.taskCount.decrementAndGet();
+                    return;
+                }
+            }
+        }
+
+        public boolean isCancelled() {
+            return state.get() == STATE_CANCELLED;
+        }
+    }
+
+    private static volatile TimingWheelScheduler shared;
+
+    private final long tickNanos;
+    private final Timeout[] wheel;
+    private final int mask;
+    private final ConcurrentLinkedQueue<Timeout> newTimeouts = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger taskCount = new AtomicInteger();
+    private final long startNanos = System.nanoTime();
+    private final Thread ticker;
+    private volatile boolean running = true;
+    private long tick; // next tick to process, ticker thread only
+
+    // One scheduler for the whole JVM, created on first use
+    public static TimingWheelScheduler shared() {
+        TimingWheelScheduler scheduler = shared;
+        if (scheduler == null) {
+            synchronized (TimingWheelScheduler.class) {
+                scheduler = shared;
+                if (scheduler == null) {
+                    scheduler = new TimingWheelScheduler(DEFAULT_TICK_NANOS, DEFAULT_WHEEL_SIZE);
+                    shared = scheduler;
+                }
+            }
+        }
+        return scheduler;
+    }
+
+    public TimingWheelScheduler(long tickNanos, int wheelSize) {
+        this(tickNanos, wheelSize, "oms-timing-wheel");
+    }
+
+    public TimingWheelScheduler(long tickNanos, int wheelSize, String threadName) {
+        if (wheelSize <= 0 || Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("Wheel size must be a power of two: " + wheelSize);
+        }
+        if (tickNanos <= 0) {
+            throw new IllegalArgumentException("Tick must be positive: " + tickNanos);
+        }
+        this.tickNanos = tickNanos;
+        this.wheel = new Timeout[wheelSize];
+        this.mask = wheelSize - 1;
+        this.ticker = new Thread(this::runTicker, threadName);
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    public long tickNanos() {
+        return tickNanos;
+    }
+
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        return submit(new Timeout(this, task, System.nanoTime() + unit.toNanos(delay), 0));
+    }
+
+    // Periods shorter than a tick run once per tick
+    public Timeout scheduleAtFixedRate(Runnable task, long initialDelay, long period, TimeUnit unit) {
+        long periodNanos = unit.toNanos(period);
+        if (periodNanos <= 0) {
+            throw new IllegalArgumentException("Period must be positive: " + period);
+        }
+        return submit(new Timeout(this, task, System.nanoTime() + unit.toNanos(initialDelay), periodNanos));
+    }
+
+    // Tasks scheduled and not yet cancelled (or finished, for one-shot tasks)
+    public int taskCount() {
+        return taskCount.get();
+    }
+
+    // Stops the ticker; tasks still scheduled never run
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(ticker);
+    }
+
+    private Timeout submit(Timeout timeout) {
+        if (!running) {
+            throw new IllegalStateException("Scheduler is shut down");
+        }
+        taskCount.incrementAndGet();
+        newTimeouts.offer(timeout);
+        LockSupport.unpark(ticker);
+        return timeout;
+    }
+
+    private void runTicker() {
+        while (running) {
+            long tickDeadline = startNanos + (tick + 1) * tickNanos;
+            long sleepNanos = tickDeadline - System.nanoTime();
+            if (sleepNanos > 0) {
+                if (taskCount.get() == 0 && newTimeouts.isEmpty()) {
+                    LockSupport.park(this); // idle - submit() unparks
+                    // Nothing was due while idle, so skip the ticks instead of replaying them
+                    tick = Math.max(tick, (System.nanoTime() - startNanos) / tickNanos);
+                    continue;
+                }
+                LockSupport.parkNanos(this, sleepNanos);
+                continue;
+            }
+            transferNewTimeouts();
+            expireBucket(wheel[(int) (tick & mask)]);
+            tick++;
+        }
+    }
+
+    private void transferNewTimeouts() {
+        Timeout timeout;
+        while ((timeout = newTimeouts.poll()) != null) {
+            if (!timeout.isCancelled()) {
+                place(timeout, tick);
+            }
+        }
+    }
+
+    // firstTick is the first tick whose bucket hasn't been expired yet
+    private void place(Timeout timeout, long firstTick) {
+        long deadlineTick = (timeout.deadline - startNanos + tickNanos - 1) / tickNanos;
+        long targetTick = Math.max(deadlineTick, firstTick); // already due: first tick
+        timeout.remainingRounds = (targetTick - firstTick) / wheel.length;
+        int bucket = (int) (targetTick & mask);
+        timeout.bucket = bucket;
+        timeout.prev = null;
+        timeout.next = wheel[bucket];
+        if (wheel[bucket] != null) {
+            wheel[bucket].prev = timeout;
+        }
+        wheel[bucket] = timeout;
+    }
+
+    private void unlink(Timeout timeout) {
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            wheel[timeout.bucket] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.bucket = -1;
+    }
+
+    private void expireBucket(Timeout timeout) {
+        while (timeout != null) {
+            Timeout following = timeout.next;
+            if (timeout.isCancelled()) {
+                unlink(timeout);
+            } else if (timeout.remainingRounds > 0) {
+                timeout.remainingRounds--;
+            } else {
+                unlink(timeout);
+                run(timeout);
+            }
+            timeout = following;
+        }
+    }
+
+    private void run(Timeout timeout) {
+        if (!timeout.state.compareAndSet(STATE_SCHEDULED, STATE_RUNNING)) {
+            return; // cancelled in the meantime
+        }
+        try {
+            timeout.task.run();
+        } catch (Throwable t) {
+            System.err.println("Scheduled task failed: " + t);
+        }
+        if (timeout.periodNanos == 0) {
+            if (timeout.state.compareAndSet(STATE_RUNNING, STATE_CANCELLED)) {
+                taskCount.decrementAndGet();
+            }
+        } else if (timeout.state.compareAndSet(STATE_RUNNING, STATE_SCHEDULED)) {
+            // Fixed rate; a run that fell behind goes in the next tick rather than bursting
+            timeout.deadline += timeout.periodNanos;
+            long earliest = startNanos + (tick + 1) * tickNanos;
+            if (timeout.deadline < earliest) {
+                timeout.deadline = earliest;
+            }
+            place(timeout, tick + 1);
+        }
+    }
+}
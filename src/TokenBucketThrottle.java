@@ -0,0 +1,41 @@
+/*
+ * Token bucket with nanosecond refill.
+ * Tokens are tracked as "earned nanoseconds" so refill is pure integer math:
+ * one token is worth nanosPerToken, and the bucket holds at most burst tokens.
+ */
+public class TokenBucketThrottle implements OrderThrottle {
+    private final long nanosPerToken;
+    private final long capacityNanos;
+    private long availableNanos;
+    private long lastRefillNanos;
+
+    public TokenBucketThrottle(int maxPerSecond, int burst) {
+        if (maxPerSecond <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("Rate and burst must be positive");
+        }
+        // Round up so we never exceed the configured rate
+        this.nanosPerToken = (NANOS_PER_SECOND + maxPerSecond - 1) / maxPerSecond;
+        this.capacityNanos = nanosPerToken * burst;
+        this.availableNanos = capacityNanos;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    @Override
+    public boolean tryAcquire(long nowNanos) {
+        if (canAcquire(nowNanos)) {
+            availableNanos -= nanosPerToken;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean canAcquire(long nowNanos) {
+        long elapsed = nowNanos - lastRefillNanos;
+        if (elapsed > 0) {
+            availableNanos = Math.min(capacityNanos, availableNanos + elapsed);
+            lastRefillNanos = nowNanos;
+        }
+        return availableNanos >= nanosPerToken;
+    }
+}
@@ -0,0 +1,168 @@
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/*
+ * Trading calendar: when the OMS should be logged on.
+ * A trading day has one or more sessions (open/close local times); a session
+ * whose close is not after its open runs overnight and closes on the next
+ * calendar day. Sessions are keyed to the day they open on, and nothing
+ * opens on a holiday or a closed weekday (an overnight session that opened
+ * the day before still runs to its close).
+ *
+ * Rather than polling the clock, OrderManagement asks for the next
+ * transition instant and sets a single timer for it. Instants are computed
+ * in the schedule's zone, so DST changes are handled by java.time.
+ * Immutable once built.
+ */
+public class TradingSchedule {
+    // How far ahead nextTransition looks before giving up (covers long holiday runs)
+    private static final int MAX_DAYS_AHEAD = 400;
+
+    private static final class Session {
+        final LocalTime open;
+        final LocalTime close;
+        final boolean overnight;
+
+        Session(LocalTime open, LocalTime close) {
+            boolean untilMidnight = close.equals(LocalTime.MAX);
+            this.open = open;
+            this.close = untilMidnight ? LocalTime.MIDNIGHT : close;
+            this.overnight = untilMidnight || !close.isAfter(open);
+        }
+    }
+
+    private final ZoneId zone;
+    private final List<Session> sessions;
+    private final Set<LocalDate> holidays;
+    private final Set<DayOfWeek> closedDays;
+
+    private TradingSchedule(Builder builder) {
+        this.zone = builder.zone;
+        this.sessions = Collections.unmodifiableList(new ArrayList<>(builder.sessions));
+        this.holidays = Collections.unmodifiableSet(new HashSet<>(builder.holidays));
+        this.closedDays = Collections.unmodifiableSet(EnumSet.copyOf(builder.closedDays));
+    }
+
+    // One session every day in the system zone - the classic start/end window
+    public static TradingSchedule daily(LocalTime open, LocalTime close) {
+        return builder().session(open, close).build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public ZoneId zone() {
+        return zone;
+    }
+
+    public boolean isOpen(Instant time) {
+        LocalDate today = time.atZone(zone).toLocalDate();
+        // Yesterday's overnight sessions may still be running
+        for (LocalDate day = today.minusDays(1); !day.isAfter(today); day = day.plusDays(1)) {
+            if (!isTradingDay(day)) {
+                continue;
+            }
+            for (Session session : sessions) {
+                if (!time.isBefore(openInstant(day, session)) && time.isBefore(closeInstant(day, session))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // The first open or close strictly after 'time', or null if none within MAX_DAYS_AHEAD
+    public Instant nextTransition(Instant time) {
+        LocalDate today = time.atZone(zone).toLocalDate();
+        LocalDate lastDay = today.plusDays(MAX_DAYS_AHEAD);
+        Instant next = null;
+        for (LocalDate day = today.minusDays(1); day.isBefore(lastDay); day = day.plusDays(1)) {
+            if (!isTradingDay(day)) {
+                continue;
+            }
+            for (Session session : sessions) {
+                next = earliestAfter(time, next, openInstant(day, session));
+                next = earliestAfter(time, next, closeInstant(day, session));
+            }
+            // Anything from a later day comes after this day's opens, so the
+            // first trading day after today settles it
+            if (next != null && day.isAfter(today)) {
+                return next;
+            }
+        }
+        return next;
+    }
+
+    private boolean isTradingDay(LocalDate day) {
+        return !holidays.contains(day) && !closedDays.contains(day.getDayOfWeek());
+    }
+
+    private Instant openInstant(LocalDate day, Session session) {
+        return ZonedDateTime.of(day, session.open, zone).toInstant();
+    }
+
+    private Instant closeInstant(LocalDate day, Session session) {
+        LocalDate closeDay = session.overnight ? day.plusDays(1) : day;
+        return ZonedDateTime.of(closeDay, session.close, zone).toInstant();
+    }
+
+    private static Instant earliestAfter(Instant time, Instant current, Instant candidate) {
+        if (!candidate.isAfter(time)) {
+            return current;
+        }
+        return current == null || candidate.isBefore(current) ? candidate : current;
+    }
+
+    public static class Builder {
+        private ZoneId zone = ZoneId.systemDefault();
+        private final List<Session> sessions = new ArrayList<>();
+        private final Set<LocalDate> holidays = new HashSet<>();
+        private final Set<DayOfWeek> closedDays = EnumSet.noneOf(DayOfWeek.class);
+
+        public Builder zone(ZoneId zone) {
+            this.zone = zone;
+            return this;
+        }
+
+        // close <= open means the session runs past midnight; LocalTime.MAX means until midnight
+        public Builder session(LocalTime open, LocalTime close) {
+            sessions.add(new Session(open, close));
+            return this;
+        }
+
+        public Builder holiday(LocalDate date) {
+            holidays.add(date);
+            return this;
+        }
+
+        public Builder holidays(Iterable<LocalDate> dates) {
+            for (LocalDate date : dates) {
+                holidays.add(date);
+            }
+            return this;
+        }
+
+        public Builder closedOn(DayOfWeek... days) {
+            Collections.addAll(closedDays, days);
+            return this;
+        }
+
+        public TradingSchedule build() {
+            if (sessions.isEmpty()) {
+                throw new IllegalStateException("A trading schedule needs at least one session");
+            }
+            return new TradingSchedule(this);
+        }
+    }
+}
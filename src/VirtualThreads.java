@@ -0,0 +1,65 @@
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/*
+ * Creates virtual threads (JDK 21+) without requiring a JDK 21 compiler:
+ * Thread.ofVirtual() is looked up once through method handles. Finding the
+ * method isn't enough - on JDK 19/20 (this project is set up for 20) it is a
+ * preview API that throws unless the JVM runs with --enable-preview - so a
+ * real virtual thread is started and joined once before it is relied on.
+ * Without working virtual threads newThread falls back to daemon platform
+ * threads, so the code still works - it just doesn't scale to tens of
+ * thousands of threads.
+ */
+public final class VirtualThreads {
+    private static final MethodHandle OF_VIRTUAL;
+    private static final MethodHandle NAME;
+    private static final MethodHandle UNSTARTED;
+
+    static {
+        MethodHandle ofVirtual = null;
+        MethodHandle name = null;
+        MethodHandle unstarted = null;
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = lookup.findStatic(Thread.class, "ofVirtual",
+                    MethodType.methodType(Class.forName("java.lang.Thread$Builder$OfVirtual")));
+            name = lookup.findVirtual(builder, "name", MethodType.methodType(builder, String.class));
+            unstarted = lookup.findVirtual(builder, "unstarted", MethodType.methodType(Thread.class, Runnable.class));
+            Thread probe = (Thread) unstarted.invoke(name.invoke(ofVirtual.invoke(), "oms-virtual-thread-probe"),
+                    (Runnable) () -> { });
+            probe.start();
+            probe.join();
+        } catch (Throwable t) {
+            ofVirtual = null; // pre-21 runtime, or preview features not enabled
+        }
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        UNSTARTED = unstarted;
+    }
+
+    private VirtualThreads() {
+    }
+
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    // Unstarted virtual thread, or a daemon platform thread when virtual threads aren't available
+    public static Thread newThread(String name, Runnable task) {
+        if (OF_VIRTUAL != null) {
+            try {
+                Object builder = OF_VIRTUAL.invoke();
+                builder = NAME.invoke(builder, name);
+                return (Thread) UNSTARTED.invoke(builder, task);
+            } catch (Throwable t) {
+                throw new IllegalStateException("Cannot create virtual thread", t);
+            }
+        }
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
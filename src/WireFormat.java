@@ -0,0 +1,70 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/*
+ * Fixed-layout binary wire format for OrderRequest/OrderResponse (SBE-like).
+ * Every message starts with an 8-byte header followed by a fixed-size body;
+ * all fields sit at fixed offsets, so they can be read or written in place
+ * with absolute ByteBuffer access and no allocation. Buffers must be
+ * little endian (ByteBuffer.allocateDirect(n).order(ByteOrder.LITTLE_ENDIAN)).
+ *
+ * Session messages (Logon, Logout, Heartbeat) are a bare header with an
+ * empty body.
+ *
+ * Header:
+ *   0 short blockLength (body size)
+ *   2 short templateId
+ *   4 short schemaId
+ *   6 short schemaVersion
+ */
+public final class WireFormat {
+    public static final int HEADER_LENGTH = 8;
+    public static final short SCHEMA_ID = 1;
+    public static final short SCHEMA_VERSION = 1;
+
+    public static final short ORDER_REQUEST_TEMPLATE_ID = 1;
+    public static final short ORDER_RESPONSE_TEMPLATE_ID = 2;
+    public static final short LOGON_TEMPLATE_ID = 3;
+    public static final short LOGOUT_TEMPLATE_ID = 4;
+    public static final short HEARTBEAT_TEMPLATE_ID = 5;
+
+    // Cached so decoding never calls values() (which copies the array)
+    static final RequestType[] REQUEST_TYPES = RequestType.values();
+    static final ResponseType[] RESPONSE_TYPES = ResponseType.values();
+
+    private WireFormat() {
+    }
+
+    public static int templateId(ByteBuffer buffer, int offset) {
+        return buffer.getShort(offset + 2);
+    }
+
+    public static int blockLength(ByteBuffer buffer, int offset) {
+        return buffer.getShort(offset);
+    }
+
+    // Total encoded size of the message at offset
+    public static int messageLength(ByteBuffer buffer, int offset) {
+        return HEADER_LENGTH + blockLength(buffer, offset);
+    }
+
+    // Encodes a Logon/Logout/Heartbeat; returns the encoded length
+    public static int encodeSessionMessage(ByteBuffer buffer, int offset, short templateId) {
+        checkByteOrder(buffer);
+        putHeader(buffer, offset, 0, templateId);
+        return HEADER_LENGTH;
+    }
+
+    static void putHeader(ByteBuffer buffer, int offset, int blockLength, short templateId) {
+        buffer.putShort(offset, (short) blockLength);
+        buffer.putShort(offset + 2, templateId);
+        buffer.putShort(offset + 4, SCHEMA_ID);
+        buffer.putShort(offset + 6, SCHEMA_VERSION);
+    }
+
+    static void checkByteOrder(ByteBuffer buffer) {
+        if (buffer.order() != ByteOrder.LITTLE_ENDIAN) {
+            throw new IllegalArgumentException("Wire buffers must be little endian");
+        }
+    }
+}
@@ -0,0 +1,230 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Loopback exchange for tests and load runs. Accepts one OMS connection,
+ * acks Logon/Logout and answers every order request with an Accept or
+ * (with probability rejectRatio) a Reject after a delay drawn from the
+ * configured LatencyModel.
+ *
+ * A reader thread decodes requests and schedules the responses on a
+ * DelayQueue; a writer thread sends everything that has come due in one
+ * write. Blocking I/O - the OMS side is what's being measured.
+ */
+public class ExchangeSimulator implements AutoCloseable {
+
+    // Ack delay distribution
+    public interface LatencyModel {
+        long nextDelayNanos(SplittableRandom random);
+
+        static LatencyModel none() {
+            return random -> 0;
+        }
+
+        static LatencyModel fixed(long micros) {
+            long nanos = TimeUnit.MICROSECONDS.toNanos(micros);
+            return random -> nanos;
+        }
+
+        static LatencyModel uniform(long minMicros, long maxMicros) {
+            long min = TimeUnit.MICROSECONDS.toNanos(minMicros);
+            long max = TimeUnit.MICROSECONDS.toNanos(maxMicros);
+            return random -> random.nextLong(min, max + 1);
+        }
+
+        // Floor plus an exponential tail, the usual shape of exchange ack latency
+        static LatencyModel exponential(long minMicros, long meanExtraMicros) {
+            long min = TimeUnit.MICROSECONDS.toNanos(minMicros);
+            double mean = TimeUnit.MICROSECONDS.toNanos(meanExtraMicros);
+            return random -> min + (long) (-mean * Math.log(1.0 - random.nextDouble()));
+        }
+    }
+
+    private static final class PendingResponse implements Delayed {
+        final long dueNanos;
+        final short templateId;
+        final long orderId;
+        final int symbolId;
+        final ResponseType responseType;
+        final RequestType requestType;
+
+        PendingResponse(long dueNanos, short templateId, long orderId, int symbolId, ResponseType responseType,
+                        RequestType requestType) {
+            this.dueNanos = dueNanos;
+            this.templateId = templateId;
+            this.orderId = orderId;
+            this.symbolId = symbolId;
+            this.responseType = responseType;
+            this.requestType = requestType;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(dueNanos, ((PendingResponse) other).dueNanos);
+        }
+    }
+
+    private final LatencyModel latencyModel;
+    private final double rejectRatio;
+    private final ServerSocketChannel server;
+    private final DelayQueue<PendingResponse> responses = new DelayQueue<>();
+    private final Thread readerThread;
+    private volatile SocketChannel client;
+
+    private final AtomicLong requestsReceived = new AtomicLong();
+    private final AtomicLong rejectsSent = new AtomicLong();
+    private volatile int heartbeatsReceived;
+
+    // Immediate Accept for every order
+    public ExchangeSimulator() throws IOException {
+        this(LatencyModel.none(), 0.0);
+    }
+
+    public ExchangeSimulator(LatencyModel latencyModel, double rejectRatio) throws IOException {
+        this.latencyModel = latencyModel;
+        this.rejectRatio = rejectRatio;
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress("127.0.0.1", 0));
+        readerThread = new Thread(this::readLoop, "exchange-sim-reader");
+        readerThread.setDaemon(true);
+        readerThread.start();
+    }
+
+    public InetSocketAddress address() throws IOException {
+        return (InetSocketAddress) server.getLocalAddress();
+    }
+
+    public long requestsReceived() {
+        return requestsReceived.get();
+    }
+
+    public long rejectsSent() {
+        return rejectsSent.get();
+    }
+
+    public int heartbeatsReceived() {
+        return heartbeatsReceived;
+    }
+
+    private void readLoop() {
+        ByteBuffer in = ByteBuffer.allocateDirect(256 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+        OrderRequestFlyweight request = new OrderRequestFlyweight();
+        SplittableRandom random = new SplittableRandom(42);
+        try (SocketChannel socket = server.accept()) {
+            client = socket;
+            Thread writerThread = new Thread(this::writeLoop, "exchange-sim-writer");
+            writerThread.setDaemon(true);
+            writerThread.start();
+
+            while (socket.read(in) >= 0) {
+                in.flip();
+                int offset = 0;
+                while (in.limit() - offset >= WireFormat.HEADER_LENGTH
+                        && in.limit() - offset >= WireFormat.messageLength(in, offset)) {
+                    int template = WireFormat.templateId(in, offset);
+                    long now = System.nanoTime();
+                    if (template == WireFormat.ORDER_REQUEST_TEMPLATE_ID) {
+                        request.wrap(in, offset);
+                        boolean reject = rejectRatio > 0 && random.nextDouble() < rejectRatio;
+                        if (reject) {
+                            rejectsSent.incrementAndGet();
+                        }
+                        responses.put(new PendingResponse(now + latencyModel.nextDelayNanos(random),
+                                WireFormat.ORDER_RESPONSE_TEMPLATE_ID, request.orderId(), request.symbolId(),
+                                reject ? ResponseType.Reject : ResponseType.Accept, request.requestType()));
+                        requestsReceived.incrementAndGet();
+                    } else if (template == WireFormat.LOGON_TEMPLATE_ID) {
+                        responses.put(sessionMessage(now, WireFormat.LOGON_TEMPLATE_ID));
+                    } else if (template == WireFormat.LOGOUT_TEMPLATE_ID) {
+                        // Acks still scheduled after this point are lost with the session;
+                        // keep reading until the OMS closes its end
+                        responses.put(sessionMessage(now, WireFormat.LOGOUT_TEMPLATE_ID));
+                    } else if (template == WireFormat.HEARTBEAT_TEMPLATE_ID) {
+                        heartbeatsReceived++;
+                    }
+                    offset += WireFormat.messageLength(in, offset);
+                }
+                in.position(offset);
+                in.compact();
+            }
+        } catch (IOException e) {
+            // connection dropped or simulator closed
+        } finally {
+            // Wakes the writer if the connection dropped without a Logout
+            responses.put(sessionMessage(System.nanoTime(), WireFormat.LOGOUT_TEMPLATE_ID));
+        }
+    }
+
+    private static PendingResponse sessionMessage(long dueNanos, short templateId) {
+        return new PendingResponse(dueNanos, templateId, 0, 0, null, null);
+    }
+
+    // Sends every due response in one write
+    private void writeLoop() {
+        ByteBuffer out = ByteBuffer.allocateDirect(256 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+        OrderResponseFlyweight response = new OrderResponseFlyweight();
+        List<PendingResponse> due = new ArrayList<>();
+        try {
+            while (true) {
+                due.add(responses.take());
+                responses.drainTo(due, out.capacity() / OrderResponseFlyweight.ENCODED_LENGTH - 1);
+                boolean sessionEnded = false;
+                for (PendingResponse pending : due) {
+                    if (pending.templateId != WireFormat.ORDER_RESPONSE_TEMPLATE_ID) {
+                        int length = WireFormat.encodeSessionMessage(out, out.position(), pending.templateId);
+                        out.position(out.position() + length);
+                        if (pending.templateId == WireFormat.LOGOUT_TEMPLATE_ID) {
+                            sessionEnded = true;
+                            break;
+                        }
+                    } else {
+                        response.wrapForEncode(out, out.position())
+                                .orderId(pending.orderId)
+                                .symbolId(pending.symbolId)
+                                .responseType(pending.responseType)
+                                .requestType(pending.requestType);
+                        out.position(out.position() + OrderResponseFlyweight.ENCODED_LENGTH);
+                    }
+                }
+                due.clear();
+                out.flip();
+                while (out.hasRemaining()) {
+                    client.write(out);
+                }
+                out.clear();
+                if (sessionEnded) {
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            // OMS went away
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        SocketChannel socket = client;
+        if (socket != null) {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,230 @@
+import java.io.PrintStream;
+import java.time.LocalTime;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * End-to-end load run: one OrderManagement connected over loopback TCP to
+ * an ExchangeSimulator, fed a New/Modify/Cancel mix across thousands of
+ * symbols at a fixed target rate. Prints per-second progress, then the
+ * sustained response throughput and the submit-to-response latency of each
+ * New: from the moment it is handed to onData - time queued behind the
+ * throttle included - to its exchange response, OMS reject or timeout.
+ * Modify and Cancel acks never reach the event sink, so only News are timed.
+ *
+ * The generator is open loop: requests are issued on a fixed schedule and
+ * a late generator catches up in a burst, so a stalled OMS shows up as
+ * latency rather than as a lower offered rate.
+ *
+ * Usage: java LoadGenerator [requestsPerSecond] [seconds] [symbols]
+ */
+public class LoadGenerator {
+    private static final int DEFAULT_RATE = 100_000;
+    private static final int DEFAULT_SECONDS = 10;
+    private static final int DEFAULT_SYMBOLS = 5_000;
+    private static final int NEW_PERCENT = 70;
+    private static final int MODIFY_PERCENT = 20; // the rest are cancels
+    private static final int RECENT_ORDERS = 1 << 16; // Modify/Cancel targets are drawn from these
+    private static final int SUBMIT_SLOTS = 1 << 20; // submit times of the latest News, indexed by order id
+    private static final long ACK_FLOOR_MICROS = 20;
+    private static final long ACK_MEAN_EXTRA_MICROS = 30;
+    private static final double REJECT_RATIO = 0.01;
+    private static final PrintStream out = System.out;
+
+    /*
+     * Times each New from submit to its first outcome. The order id is kept
+     * next to the submit time so an answer for an overwritten slot is ignored.
+     * Outcomes arrive on the generator, session reader and timer threads,
+     * hence the lock around the histograms.
+     */
+    private static final class SubmitLatency extends SilentEventSink {
+        private final AtomicLongArray submitIds = new AtomicLongArray(SUBMIT_SLOTS);
+        private final AtomicLongArray submitNanos = new AtomicLongArray(SUBMIT_SLOTS);
+        private final Map<ResponseType, LatencyHistogram> byResponseType = new EnumMap<>(ResponseType.class);
+        private final LatencyHistogram omsRejects = new LatencyHistogram();
+        private final LatencyHistogram timeouts = new LatencyHistogram();
+        private final LatencyHistogram overall = new LatencyHistogram();
+        private final LatencyHistogram interval = new LatencyHistogram();
+
+        SubmitLatency() {
+            for (ResponseType type : ResponseType.values()) {
+                byResponseType.put(type, new LatencyHistogram());
+            }
+        }
+
+        // Before onData: the answer may arrive on another thread before onData returns
+        void submitted(long orderId) {
+            int slot = (int) (orderId & (SUBMIT_SLOTS - 1));
+            submitNanos.set(slot, System.nanoTime());
+            submitIds.set(slot, orderId);
+        }
+
+        @Override
+        public void onOrderRejected(OrderRequest order, RejectReason reason) {
+            if (order.m_requestType == RequestType.New) {
+                answered(order.m_orderId, omsRejects);
+            }
+        }
+
+        @Override
+        public void onResponse(OrderResponse response, long latencyNanos) {
+            answered(response.m_orderId, byResponseType.get(response.m_responseType));
+        }
+
+        @Override
+        public void onOrderTimeout(long orderId, int symbolId, long ageNanos) {
+            answered(orderId, timeouts);
+        }
+
+        private void answered(long orderId, LatencyHistogram outcome) {
+            long now = System.nanoTime();
+            int slot = (int) (orderId & (SUBMIT_SLOTS - 1));
+            long submitted = submitNanos.get(slot);
+            if (!submitIds.compareAndSet(slot, orderId, 0)) {
+                return; // already answered, or the slot was reused
+            }
+            synchronized (this) {
+                outcome.record(now - submitted);
+                overall.record(now - submitted);
+                interval.record(now - submitted);
+            }
+        }
+
+        synchronized long count() {
+            return overall.count();
+        }
+
+        // p99 since the previous call, in nanoseconds
+        synchronized long intervalP99() {
+            long p99 = interval.valueAtPercentile(99.0);
+            interval.reset();
+            return p99;
+        }
+
+        synchronized void print() {
+            out.println("Submit-to-response latency (News): " + new LatencySnapshot.Summary(overall));
+            byResponseType.forEach((type, histogram) -> {
+                if (histogram.count() > 0) {
+                    out.println("  " + type + ": " + new LatencySnapshot.Summary(histogram));
+                }
+            });
+            if (omsRejects.count() > 0) {
+                out.println("  OMS reject: " + new LatencySnapshot.Summary(omsRejects));
+            }
+            if (timeouts.count() > 0) {
+                out.println("  Timeout: " + new LatencySnapshot.Summary(timeouts));
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rate = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_RATE;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SECONDS;
+        int symbols = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_SYMBOLS;
+
+        try (ExchangeSimulator exchange = new ExchangeSimulator(
+                ExchangeSimulator.LatencyModel.exponential(ACK_FLOOR_MICROS, ACK_MEAN_EXTRA_MICROS), REJECT_RATIO)) {
+            OrderManagementConfig config = new OrderManagementConfig(
+                    LocalTime.MIN, LocalTime.MAX, rate);
+            config.symbolCapacity = symbols;
+            config.expectedLiveOrders = rate;
+            config.messagePoolSize = Integer.highestOneBit(Math.max(rate, 1024));
+            config.exchangeAddress = exchange.address();
+            SubmitLatency latency = new SubmitLatency();
+            config.eventSink = latency;
+            OrderManagement oms = new OrderManagement(config);
+            waitForLogon(oms);
+
+            out.printf("=== Load: %,d req/s for %ds across %,d symbols (%d%% New, %d%% Modify, %d%% Cancel) ===%n",
+                    rate, seconds, symbols, NEW_PERCENT, MODIFY_PERCENT, 100 - NEW_PERCENT - MODIFY_PERCENT);
+            out.printf("%6s %12s %12s %10s %10s %12s%n", "sec", "submitted", "answered", "pending", "in flight",
+                    "p99 us");
+
+            long submitted = run(oms, latency, rate, seconds, symbols);
+            drain(oms);
+            long elapsedNanos = TimeUnit.SECONDS.toNanos(seconds);
+
+            out.printf("Submitted %,d requests, exchange received %,d, rejects %,d, pool misses %,d%n",
+                    submitted, exchange.requestsReceived(), exchange.rejectsSent(), oms.poolMisses());
+            out.printf("Sustained: %,.0f News answered/sec%n",
+                    latency.count() * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos);
+            latency.print();
+            oms.stop();
+        }
+    }
+
+    private static long run(OrderManagement oms, SubmitLatency latency, int rate, int seconds, int symbols) {
+        SplittableRandom random = new SplittableRandom(7);
+        long[] recentIds = new long[RECENT_ORDERS];
+        int[] recentSymbols = new int[RECENT_ORDERS];
+        long nextOrderId = 1;
+        long submitted = 0;
+        long answeredAtLastReport = 0;
+
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        long nextReport = start + TimeUnit.SECONDS.toNanos(1);
+        long nextSend = start;
+        while (nextSend < end) {
+            long now = System.nanoTime();
+            while (nextSend <= now && nextSend < end) {
+                OrderRequest req = oms.claimRequest(); // owned by the OMS once onData is called
+                int roll = random.nextInt(100);
+                if (roll < NEW_PERCENT || nextOrderId <= RECENT_ORDERS) {
+                    int slot = (int) (nextOrderId & (RECENT_ORDERS - 1));
+                    req.m_requestType = RequestType.New;
+                    req.m_orderId = nextOrderId++;
+                    req.m_symbolId = random.nextInt(symbols);
+                    recentIds[slot] = req.m_orderId;
+                    recentSymbols[slot] = req.m_symbolId;
+                    latency.submitted(req.m_orderId);
+                } else {
+                    int slot = random.nextInt(RECENT_ORDERS);
+                    req.m_requestType = roll < NEW_PERCENT + MODIFY_PERCENT ? RequestType.Modify : RequestType.Cancel;
+                    req.m_orderId = recentIds[slot];
+                    req.m_symbolId = recentSymbols[slot];
+                }
+                req.m_price = 100.0 + random.nextInt(100) * 0.01;
+                req.m_qty = 1 + random.nextInt(100);
+                req.m_side = random.nextBoolean() ? 'B' : 'S';
+                oms.onData(req);
+                submitted++;
+                nextSend += intervalNanos;
+            }
+
+            if (now >= nextReport) {
+                long answered = latency.count();
+                out.printf("%6d %,12d %,12d %,10d %,10d %,12.1f%n",
+                        (now - start) / TimeUnit.SECONDS.toNanos(1), submitted,
+                        answered - answeredAtLastReport, oms.pendingOrderCount(),
+                        oms.inFlightOrderCount(), latency.intervalP99() / 1000.0);
+                answeredAtLastReport = answered;
+                nextReport += TimeUnit.SECONDS.toNanos(1);
+            }
+            Thread.onSpinWait();
+        }
+        return submitted;
+    }
+
+    private static void waitForLogon(OrderManagement oms) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (oms.exchangeSessionState() != SessionState.LoggedOn) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("Exchange simulator did not ack the logon");
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    // Gives outstanding acks up to two seconds to arrive
+    private static void drain(OrderManagement oms) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while ((oms.inFlightOrderCount() > 0 || oms.pendingOrderCount() > 0) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compares the heap footprint of the boxed JDK maps OrderManagement used to
+ * keep (HashMap<Long, ?> and ConcurrentHashMap<Long, Long>) with the
+ * primitive open-addressing maps, at 1M live orders.
+ * Plain Java main, run with a fixed heap for stable numbers, e.g. -Xmx2g.
+ */
+public class MapFootprintComparison {
+    private static final int LIVE_ORDERS = 1_000_000;
+
+    public static void main(String[] args) {
+        System.out.println("=== Map Footprint Comparison (" + LIVE_ORDERS + " live orders) ===");
+        Object marker = new Object();
+
+        long before = usedHeap();
+        Map<Long, Object> boxedLookup = new HashMap<>();
+        Map<Long, Long> boxedTimestamps = new ConcurrentHashMap<>();
+        for (long id = 1; id <= LIVE_ORDERS; id++) {
+            boxedLookup.put(id, marker);
+            boxedTimestamps.put(id, System.nanoTime());
+        }
+        long boxedBytes = usedHeap() - before;
+        System.out.printf("HashMap<Long,Object> + ConcurrentHashMap<Long,Long>: %,d bytes (%.1f per order)%n",
+                boxedBytes, (double) boxedBytes / LIVE_ORDERS);
+        boxedLookup = null;
+        boxedTimestamps = null;
+
+        before = usedHeap();
+        LongObjectHashMap<Object> lookup = new LongObjectHashMap<>(LIVE_ORDERS);
+        LongLongHashMap timestamps = new LongLongHashMap(LIVE_ORDERS, Long.MIN_VALUE);
+        for (long id = 1; id <= LIVE_ORDERS; id++) {
+            lookup.put(id, marker);
+            timestamps.put(id, System.nanoTime());
+        }
+        long primitiveBytes = usedHeap() - before;
+        System.out.printf("LongObjectHashMap + LongLongHashMap:                 %,d bytes (%.1f per order)%n",
+                primitiveBytes, (double) primitiveBytes / LIVE_ORDERS);
+
+        // Sanity check that the primitive maps hold what we put in, including after removals
+        for (long id = 1; id <= LIVE_ORDERS; id += 2) {
+            lookup.remove(id);
+            timestamps.remove(id);
+        }
+        boolean consistent = lookup.size() == LIVE_ORDERS / 2 && timestamps.size() == LIVE_ORDERS / 2;
+        for (long id = 1; id <= LIVE_ORDERS && consistent; id++) {
+            boolean expected = (id & 1) == 0;
+            consistent = lookup.containsKey(id) == expected && timestamps.containsKey(id) == expected;
+        }
+        System.out.println("Primitive maps consistent after removals: " + consistent);
+        System.out.println("=== Comparison Completed ===");
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
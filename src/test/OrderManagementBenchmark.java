@@ -0,0 +1,423 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Micro-benchmarks for the OrderManagement hot paths.
+ * Plain Java main (like OrderManagementTest), no JMH dependency: JMH refuses
+ * benchmark classes in the default package, which is where all of our code
+ * lives. Each scenario is warmed up, then run for a fixed number of
+ * operations; we report throughput and sampled latency percentiles
+ * (every SAMPLE_EVERY-th operation is timed individually). The OMS runs with
+ * its default event sink, the async binary journal, written to a temporary
+ * directory that is removed at the end of the run.
+ *
+ * Run with e.g. java -Xms4g -Xmx4g -XX:+AlwaysPreTouch OrderManagementBenchmark
+ */
+public class OrderManagementBenchmark {
+    private static final int WARMUP_OPS = 200_000;
+    private static final int MEASURED_OPS = 1_000_000;
+    private static final int SAMPLE_EVERY = 16;
+    private static final int BATCH_SIZE = 100;
+    private static final int CONTENTION_THREADS = 4;
+    private static final int RECOVERY_ORDERS = 2_000_000;
+    private static final int SESSIONS = 10_000;
+    private static final int PLATFORM_THREAD_SESSIONS = 1_000;
+    private static final int[] QUEUE_DEPTHS = {1_000, 100_000, 1_000_000};
+    private static final PrintStream out = System.out;
+    private static Path eventDirectory;
+    private static int eventJournals;
+
+    interface Op {
+        void run(long i);
+    }
+
+    public static void main(String[] args) throws Exception {
+        out.println("=== OrderManagement Benchmarks ===");
+        eventDirectory = Files.createTempDirectory("oms-bench-events");
+        // Run first, while the heap is clean, so the per-session footprint is meaningful
+        benchSessions(ExecutionMode.SharedScheduler, SESSIONS);
+        // Without virtual threads (pre-21 runtime) every session costs two platform threads
+        benchSessions(ExecutionMode.VirtualThreads,
+                VirtualThreads.isSupported() ? SESSIONS : PLATFORM_THREAD_SESSIONS);
+
+        out.printf("%-40s %14s %10s %10s %10s %10s%n", "Scenario", "ops/sec", "p50 ns", "p99 ns", "p99.9 ns", "max ns");
+        benchNewUnderLimit();
+        benchRiskChecks();
+        benchNewOverLimit();
+        benchBatchOverLimit();
+        for (int depth : QUEUE_DEPTHS) {
+            benchModifyAgainstQueue(depth);
+            benchCancelAgainstQueue(depth);
+        }
+        benchResponseLatencyRecording();
+        benchContention(IngressMode.Locked);
+        benchContention(IngressMode.RingBuffer);
+        benchSharded(1);
+        benchSharded(CONTENTION_THREADS);
+        benchJournalRecovery();
+
+        try (Stream<Path> files = Files.list(eventDirectory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(eventDirectory);
+        out.println("=== Benchmarks Completed ===");
+    }
+
+    // New under the rate limit: sent straight away, then acked so the in-flight map stays small
+    private static void benchNewUnderLimit() {
+        OrderManagement oms = newOms(Integer.MAX_VALUE, IngressMode.Locked);
+        OrderRequest req = order(RequestType.New, 0);
+        OrderResponse resp = new OrderResponse();
+        resp.m_responseType = ResponseType.Accept;
+        run("onData(New) under limit + ack", i -> {
+            req.m_orderId = i;
+            oms.onData(req);
+            resp.m_orderId = i;
+            oms.onData(resp);
+        });
+        oms.stop();
+    }
+
+    // The same with all four built-in pre-trade checks passing, plus the chain on its own
+    private static void benchRiskChecks() {
+        OrderManagementConfig config = new OrderManagementConfig(LocalTime.MIN, LocalTime.MAX, Integer.MAX_VALUE);
+        config.expectedLiveOrders = 1 << 21;
+        config.preTradeChecks = newRiskChain(config.symbolCapacity);
+        OrderManagement oms = new OrderManagement(withEventJournal(config));
+        OrderRequest req = order(RequestType.New, 0);
+        OrderResponse resp = new OrderResponse();
+        resp.m_responseType = ResponseType.Accept;
+        run("onData(New) + 4 risk checks + ack", i -> {
+            req.m_orderId = i;
+            oms.onData(req);
+            resp.m_orderId = i;
+            oms.onData(resp);
+        });
+        oms.stop();
+
+        PreTradeRiskChain chain = newRiskChain(config.symbolCapacity);
+        run("PreTradeRiskChain.evaluate (4 checks)", i -> {
+            req.m_symbolId = (int) (i & 1023);
+            if (chain.evaluate(req, false) != PreTradeRiskChain.ACCEPTED) {
+                throw new IllegalStateException("Benchmark order rejected");
+            }
+        });
+    }
+
+    private static PreTradeRiskChain newRiskChain(int symbols) {
+        PriceScales scales = new PriceScales(symbols, 4);
+        FatFingerCheck fatFinger = new FatFingerCheck(symbols, 500);
+        for (int symbolId = 0; symbolId < 1024; symbolId++) {
+            fatFinger.setReferencePrice(symbolId, scales.toFixed(symbolId, 100.5));
+        }
+        return new PreTradeRiskChain(scales)
+                .add(new MaxQtyCheck(symbols, 10_000))
+                .add(new PriceBandCheck(symbols))
+                .add(new MaxNotionalCheck(symbols, scales.toFixed(0, 1_000_000.0)))
+                .add(fatFinger);
+    }
+
+    // New over the rate limit: goes to the queue, then cancelled to keep the queue bounded
+    private static void benchNewOverLimit() {
+        OrderManagement oms = newOms(1, IngressMode.Locked);
+        OrderRequest cancel = order(RequestType.Cancel, 0);
+        run("onData(New) over limit + cancel", i -> {
+            oms.onData(order(RequestType.New, i));
+            cancel.m_orderId = i;
+            oms.onData(cancel);
+        });
+        oms.stop();
+    }
+
+    // Same New + Cancel load as above, delivered in gateway batches through the batch API
+    private static void benchBatchOverLimit() {
+        OrderManagement oms = newOms(1, IngressMode.Locked);
+        OrderRequest[] batch = new OrderRequest[BATCH_SIZE];
+        RequestOutcome[] outcomes = new RequestOutcome[BATCH_SIZE];
+        for (int i = 0; i < BATCH_SIZE; i += 2) {
+            batch[i + 1] = order(RequestType.Cancel, 0);
+        }
+        // One op = one batch of BATCH_SIZE / 2 New + Cancel pairs
+        run("onData(batch of " + BATCH_SIZE + ") over limit", i -> {
+            for (int j = 0; j < BATCH_SIZE; j += 2) {
+                long id = i * BATCH_SIZE + j;
+                batch[j] = order(RequestType.New, id);
+                batch[j + 1].m_orderId = id;
+            }
+            oms.onData(batch, 0, BATCH_SIZE, outcomes);
+        }, MEASURED_OPS / BATCH_SIZE);
+        oms.stop();
+    }
+
+    private static void benchModifyAgainstQueue(int depth) {
+        OrderManagement oms = newOms(1, IngressMode.Locked);
+        fillQueue(oms, depth);
+        run("onData(Modify) queue=" + depth, i -> {
+            // A fresh request each time: a Modify of the sent order is held by the OMS
+            OrderRequest modify = order(RequestType.Modify, 1 + (i * 7919) % depth);
+            modify.m_qty = i;
+            oms.onData(modify);
+        });
+        oms.stop();
+    }
+
+    // Cancel an order from the middle of the queue and re-queue it, so depth stays constant
+    private static void benchCancelAgainstQueue(int depth) {
+        OrderManagement oms = newOms(1, IngressMode.Locked);
+        fillQueue(oms, depth);
+        run("onData(Cancel) queue=" + depth, i -> {
+            long id = 1 + (i * 7919) % depth;
+            oms.onData(order(RequestType.Cancel, id));
+            oms.onData(order(RequestType.New, id));
+        });
+        oms.stop();
+    }
+
+    // Only the response path is on the clock: orders are sent in the untimed part of the op
+    private static void benchResponseLatencyRecording() {
+        OrderManagement oms = newOms(Integer.MAX_VALUE, IngressMode.Locked);
+        OrderRequest req = order(RequestType.New, 0);
+        OrderResponse resp = new OrderResponse();
+        resp.m_responseType = ResponseType.Accept;
+        long[] samples = new long[MEASURED_OPS];
+        for (int pass = 0; pass < 2; pass++) {
+            int ops = pass == 0 ? WARMUP_OPS : MEASURED_OPS;
+            long total = 0;
+            for (int i = 0; i < ops; i++) {
+                req.m_orderId = i;
+                oms.onData(req);
+                resp.m_orderId = i;
+                long start = System.nanoTime();
+                oms.onData(resp);
+                long elapsed = System.nanoTime() - start;
+                total += elapsed;
+                if (pass == 1) {
+                    samples[i] = elapsed;
+                }
+            }
+            if (pass == 1) {
+                report("onData(Response)", ops * 1_000_000_000.0 / total, samples, ops);
+            }
+        }
+        oms.stop();
+    }
+
+    // Several gateway threads sending New + Cancel pairs into one OMS
+    private static void benchContention(IngressMode mode) throws InterruptedException {
+        OrderManagement oms = newOms(1, mode);
+        runContended(CONTENTION_THREADS + " threads New+Cancel, " + mode, oms::onData);
+        oms.stop();
+    }
+
+    // Same load, one symbol per thread, spread over a sharded engine
+    private static void benchSharded(int shardCount) throws InterruptedException {
+        OrderManagementConfig config = new OrderManagementConfig(LocalTime.MIN, LocalTime.MAX, 1);
+        config.expectedLiveOrders = 1 << 21;
+        ShardedOrderManagement engine = new ShardedOrderManagement(withEventJournal(config), shardCount);
+        runContended(CONTENTION_THREADS + " threads New+Cancel, " + shardCount + " shard(s)", engine::onData);
+        engine.stop();
+    }
+
+    private static void runContended(String name, Consumer<OrderRequest> target) throws InterruptedException {
+        int opsPerThread = MEASURED_OPS / CONTENTION_THREADS;
+        long[][] samples = new long[CONTENTION_THREADS][opsPerThread / SAMPLE_EVERY + 1];
+        Thread[] threads = new Thread[CONTENTION_THREADS];
+        for (int t = 0; t < CONTENTION_THREADS; t++) {
+            final int threadId = t;
+            threads[t] = new Thread(() -> {
+                long base = (long) threadId << 40;
+                for (int i = 0; i < WARMUP_OPS / CONTENTION_THREADS + opsPerThread; i++) {
+                    long id = base + i;
+                    boolean sampled = i % SAMPLE_EVERY == 0 && i >= WARMUP_OPS / CONTENTION_THREADS;
+                    long start = sampled ? System.nanoTime() : 0;
+                    OrderRequest req = order(RequestType.New, id);
+                    req.m_symbolId = threadId;
+                    target.accept(req);
+                    // Never reused: a RingBuffer-mode OMS holds the request until its ingress thread applies it
+                    OrderRequest cancel = order(RequestType.Cancel, id);
+                    cancel.m_symbolId = threadId;
+                    target.accept(cancel);
+                    if (sampled) {
+                        samples[threadId][(i - WARMUP_OPS / CONTENTION_THREADS) / SAMPLE_EVERY] = System.nanoTime() - start;
+                    }
+                }
+            });
+        }
+        long start = System.nanoTime();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long[] merged = new long[CONTENTION_THREADS * samples[0].length];
+        for (int t = 0; t < CONTENTION_THREADS; t++) {
+            System.arraycopy(samples[t], 0, merged, t * samples[0].length, samples[t].length);
+        }
+        double opsPerSec = (WARMUP_OPS + (double) MEASURED_OPS) * 1_000_000_000.0 / elapsed;
+        report(name, opsPerSec, merged, merged.length);
+    }
+
+    // Startup replay of a journal holding RECOVERY_ORDERS orders in assorted states
+    private static void benchJournalRecovery() throws IOException {
+        Path file = Files.createTempFile("oms-recovery-bench", ".wal");
+        OrderStateJournal journal = new OrderStateJournal(file, 1 << 20);
+        OrderResponse ack = new OrderResponse();
+        ack.m_responseType = ResponseType.Accept;
+        for (long id = 1; id <= RECOVERY_ORDERS; id++) {
+            journal.appendRequest(order(RequestType.New, id));
+            if (id % 4 != 0) {
+                journal.appendSent(id, (int) (id & 1023), 'B', System.currentTimeMillis());
+                if (id % 4 != 1) {
+                    ack.m_orderId = id;
+                    journal.appendResponse(ack);
+                }
+            }
+        }
+        journal.close();
+        long records = journal.recordCount();
+
+        OrderManagementConfig config = new OrderManagementConfig(LocalTime.MIN, LocalTime.MAX, 1);
+        config.orderJournalPath = file;
+        config.expectedLiveOrders = 1 << 21;
+        withEventJournal(config);
+        long start = System.nanoTime();
+        OrderManagement oms = new OrderManagement(config);
+        long elapsed = System.nanoTime() - start;
+        out.printf("Recovery: %,d records replayed in %,d ms (%,.0f records/sec), %,d pending, %,d in flight%n",
+                records, elapsed / 1_000_000, records * 1_000_000_000.0 / elapsed,
+                oms.pendingOrderCount(), oms.inFlightOrderCount());
+        oms.stop();
+        Files.delete(file);
+    }
+
+    // One OMS per client session: cost of hosting them and how quickly all of
+    // them drain a queued order (rate 1000/sec, second order of each session queued)
+    private static void benchSessions(ExecutionMode mode, int sessions) throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        settleHeap();
+        long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+        int threadsBefore = Thread.activeCount();
+
+        long start = System.nanoTime();
+        OrderManagement[] instances = new OrderManagement[sessions];
+        for (int i = 0; i < sessions; i++) {
+            OrderManagementConfig config = new OrderManagementConfig(LocalTime.MIN, LocalTime.MAX, 1000);
+            config.executionMode = mode;
+            config.eventSink = new SilentEventSink();
+            config.symbolCapacity = 64;
+            config.expectedLiveOrders = 16;
+            instances[i] = new OrderManagement(config);
+        }
+        long created = System.nanoTime();
+        settleHeap();
+        long heapUsed = runtime.totalMemory() - runtime.freeMemory() - heapBefore;
+        int threads = Thread.activeCount() - threadsBefore;
+
+        long submitted = System.nanoTime();
+        for (OrderManagement oms : instances) {
+            oms.onData(order(RequestType.New, 1));
+            oms.onData(order(RequestType.New, 2));
+        }
+        for (OrderManagement oms : instances) {
+            while (oms.pendingOrderCount() > 0) {
+                Thread.sleep(1);
+            }
+        }
+        long drained = System.nanoTime();
+
+        for (OrderManagement oms : instances) {
+            oms.stop();
+        }
+        long stopped = System.nanoTime();
+        out.printf("Sessions %s x %,d: create %,d ms, +%,d platform threads, %,d KB heap/session, "
+                        + "all queues drained in %,d ms, stop %,d ms%n",
+                mode, sessions, (created - start) / 1_000_000, threads, heapUsed / sessions / 1024,
+                (drained - submitted) / 1_000_000, (stopped - drained) / 1_000_000);
+    }
+
+    private static void settleHeap() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+    }
+
+    private static void run(String name, Op op) {
+        run(name, op, MEASURED_OPS);
+    }
+
+    private static void run(String name, Op op, int measuredOps) {
+        for (int i = 0; i < measuredOps / 5; i++) {
+            op.run(i + 1_000_000_000L);
+        }
+        long[] samples = new long[measuredOps / SAMPLE_EVERY + 1];
+        int sampleCount = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < measuredOps; i++) {
+            if (i % SAMPLE_EVERY == 0) {
+                long opStart = System.nanoTime();
+                op.run(i + 2_000_000_000L);
+                samples[sampleCount++] = System.nanoTime() - opStart;
+            } else {
+                op.run(i + 2_000_000_000L);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        report(name, measuredOps * 1_000_000_000.0 / elapsed, samples, sampleCount);
+    }
+
+    private static void report(String name, double opsPerSec, long[] samples, int count) {
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        out.printf("%-40s %,14.0f %10d %10d %10d %10d%n", name, opsPerSec,
+                percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 0.999),
+                sorted[sorted.length - 1]);
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static OrderManagement newOms(int maxPerSecond, IngressMode mode) {
+        OrderManagementConfig config = new OrderManagementConfig(LocalTime.MIN, LocalTime.MAX, maxPerSecond);
+        config.ingressMode = mode;
+        config.expectedLiveOrders = 1 << 21;
+        return new OrderManagement(withEventJournal(config));
+    }
+
+    // Each OMS journals to its own file in the run's event directory (shards add ".shard<i>")
+    private static OrderManagementConfig withEventJournal(OrderManagementConfig config) {
+        config.eventJournalPath = eventDirectory.resolve("events-" + (++eventJournals) + ".bin");
+        return config;
+    }
+
+    // With a rate of 1/sec everything after the first order stays queued
+    private static void fillQueue(OrderManagement oms, int depth) {
+        for (long id = 1; id <= depth; id++) {
+            oms.onData(order(RequestType.New, id));
+        }
+    }
+
+    private static OrderRequest order(RequestType type, long id) {
+        OrderRequest req = new OrderRequest();
+        req.m_orderId = id;
+        req.m_requestType = type;
+        req.m_symbolId = (int) (id & 1023);
+        req.m_price = 100.0;
+        req.m_qty = 10;
+        req.m_side = 'B';
+        return req;
+    }
+}
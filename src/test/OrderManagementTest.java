@@ -1,4 +1,19 @@
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 /**
  * Tests for the OrderManagement system.
@@ -24,13 +39,115 @@ public class OrderManagementTest {
         // Test 5: Order cancellation in queue
         testOrderCancel();
 
+        // Test 6: Orders published through the ring buffer ingress
+        testRingBufferIngress();
+
+        // Test 7: Queued orders drain per permit, not per second
+        testContinuousThrottleDrain();
+
+        // Test 8: Pooled messages are recycled by the OMS
+        testPooledMessages();
+
+        // Test 9: Events written to the binary journal
+        testBinaryEventJournal();
+
+        // Test 10: State rebuilt from the write-ahead journal
+        testJournalRecovery();
+
+        // Test 11: Latency histogram snapshot by response type and symbol
+        testLatencySnapshot();
+
+        // Test 12: Per-symbol throttle doesn't hold up other symbols
+        testPerSymbolThrottle();
+
+        // Test 13: Sharded engine routes by symbol, shares the rate limit and gives each shard its own ticker
+        testShardedEngine();
+
+        // Test 14: Batch ingest with per-order outcomes
+        testBatchIngest();
+
+        // Test 15: Outbound orders coalesced into transmit batches
+        testTransmitBatching();
+
+        // Test 16: Binary wire codec round trip and onData(ByteBuffer)
+        testWireCodec();
+
+        // Test 17: Orders sent over TCP to a loopback exchange
+        testExchangeSession();
+
+        // Test 18: Unanswered orders expire from the in-flight tracker
+        testInFlightTimeout();
+
+        // Test 19: Many instances share one timing wheel scheduler
+        testSharedScheduler();
+
+        // Test 20: Drain loop on its own (virtual) thread
+        testVirtualThreadMode();
+
+        // Test 21: Calendar schedule and an exact close transition
+        testTradingSchedule();
+
+        // Test 22: Cancel of a live order jumps the queued News
+        testAmendPriority();
+
+        // Test 23: Modify storm on a live order collapses to one replace per round trip
+        testAmendCoalescing();
+
+        // Test 24: Deep backlog held in the off-heap order store
+        testOffHeapBacklog();
+
+        // Test 25: Fixed-point prices through the codec and the Modify path
+        testFixedPointPrices();
+
+        // Test 26: Pre-trade risk chain rejects before throttling and counts per check
+        testPreTradeRiskChecks();
+
+        // Test 27: A zero rate is refused up front
+        testZeroRateRejected();
+
+        // Test 28: Cancelling an order still in the transmit buffer
+        testCancelBufferedOrder();
+
+        // Test 29: Fills and timeouts end an order's live state
+        testLiveOrderCleanup();
+
+        // Test 30: Wire prices at another scale than the receiver's
+        testPriceScaleMismatch();
+
+        // Test 31: Held orders, a protocol error and the reconnect after it
+        testExchangeSessionRecovery();
+
+        // Test 32: A full journal is compacted instead of growing without bound
+        testJournalCompaction();
+        // Test 33: Instances without a sink or path share one flusher and keep their journals
+        testDefaultEventJournal();
+        // Test 34: Shards need their own exchange addresses and close a shared sink once
+        testShardedSessions();
+        // Test 35: A Cancel lost with the connection can be sent again
+        testCancelNotTransmitted();
+        // Test 36: A fresh symbol doesn't take a global permit ahead of the backlog
+        testFairQueueBypass();
+
         System.out.println("=== All Tests Completed ===");
     }
 
+    // Tests check the console output, so print events instead of journaling them
+    private static OrderManagement newConsoleOms(LocalTime start, LocalTime end, int maxPerSecond) {
+        return newConsoleOms(start, end, maxPerSecond, IngressMode.Locked);
+    }
+
+    private static OrderManagement newConsoleOms(LocalTime start, LocalTime end, int maxPerSecond,
+                                                 IngressMode mode) {
+        OrderManagementConfig config = new OrderManagementConfig(start, end, maxPerSecond);
+        config.ingressMode = mode;
+        config.eventSink = new ConsoleEventSink();
+        return new OrderManagement(config);
+    }
+
     private static void testOrderRejectionOutsideWindow() {
         System.out.println("\n--- Test: Order Rejection Outside Trading Window ---");
         // Set window to 1 hour ago to 30 minutes ago (current time is outside)
-        OrderManagement om = new OrderManagement(
+        OrderManagement om = newConsoleOms(
                 LocalTime.now().minusHours(2),
                 LocalTime.now().minusHours(1),
                 100
@@ -48,7 +165,7 @@ public class OrderManagementTest {
     private static void testOrderAcceptanceInsideWindow() {
         System.out.println("\n--- Test: Order Acceptance Inside Trading Window ---");
         // Set window to now minus 1 hour to now plus 1 hour (inside window)
-        OrderManagement om = new OrderManagement(
+        OrderManagement om = newConsoleOms(
                 LocalTime.now().minusHours(1),
                 LocalTime.now().plusHours(1),
                 100
@@ -66,7 +183,7 @@ public class OrderManagementTest {
     private static void testOrderThrottling() {
         System.out.println("\n--- Test: Order Throttling (1 order/sec) ---");
         // Only 1 order per second
-        OrderManagement om = new OrderManagement(
+        OrderManagement om = newConsoleOms(
                 LocalTime.now().minusHours(1),
                 LocalTime.now().plusHours(1),
                 1
@@ -91,7 +208,7 @@ public class OrderManagementTest {
     private static void testOrderModify() {
         System.out.println("\n--- Test: Order Modification in Queue ---");
         // Only 1 order per second
-        OrderManagement om = new OrderManagement(
+        OrderManagement om = newConsoleOms(
                 LocalTime.now().minusHours(1),
                 LocalTime.now().plusHours(1),
                 1
@@ -115,7 +232,7 @@ public class OrderManagementTest {
     private static void testOrderCancel() {
         System.out.println("\n--- Test: Order Cancellation in Queue ---");
         // Only 1 order per second
-        OrderManagement om = new OrderManagement(
+        OrderManagement om = newConsoleOms(
                 LocalTime.now().minusHours(1),
                 LocalTime.now().plusHours(1),
                 1
@@ -135,4 +252,1133 @@ public class OrderManagementTest {
         req2.m_side = 'B';
         om.onData(req2); // Should cancel queued order (if queued)
     }
+
+    private static void testRingBufferIngress() {
+        System.out.println("\n--- Test: Ring Buffer Ingress ---");
+        OrderManagement om = newConsoleOms(
+                LocalTime.now().minusHours(1),
+                LocalTime.now().plusHours(1),
+                100,
+                IngressMode.RingBuffer
+        );
+        for (int i = 0; i < 3; i++) {
+            OrderRequest req = new OrderRequest();
+            req.m_orderId = 107 + i;
+            req.m_requestType = RequestType.New;
+            req.m_price = 100.0;
+            req.m_qty = 10;
+            req.m_side = 'B';
+            om.onData(req);
+        }
+        om.stop(); // Drains the ring first
+        // Expected: "Sending order: 107", "108", "109"
+    }
+
+    private static void testContinuousThrottleDrain() {
+        System.out.println("\n--- Test: Continuous Throttle Drain (10 orders/sec, burst 1) ---");
+        OrderManagementConfig config = new OrderManagementConfig(
+                LocalTime.now().minusHours(1),
+                LocalTime.now().plusHours(1),
+                10
+        );
+        config.throttleType = ThrottleType.TokenBucket;
+        config.throttleBurst = 1;
+        config.eventSink = new ConsoleEventSink();
+        OrderManagement om = new OrderManagement(config);
+        for (int i = 0; i < 3; i++) {
+            OrderRequest req = new OrderRequest();
+            req.m_orderId = 110 + i;
+            req.m_requestType = RequestType.New;
+            req.m_price = 100.0;
+            req.m_qty = 10;
+            req.m_side = 'B';
+            om.onData(req);
+        }
+        try {
+            Thread.sleep(350);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        om.stop();
+        // Expected: "Sending order: 110" immediately, 111 and 112 ~100ms apart
+    }
+
+    private static void testPooledMessages() {
+        System.out.println("\n--- Test: Pooled Messages (pool of 4, 20 orders) ---");
+        OrderManagementConfig config = new OrderManagementConfig(
+                LocalTime.now().minusHours(1),
+                LocalTime.now().plusHours(1),
+                100
+        );
+        config.messagePoolSize = 4;
+        config.eventSink = new ConsoleEventSink();
+        OrderManagement om = new OrderManagement(config);
+        for (int i = 0; i < 20; i++) {
+            OrderRequest req = om.claimRequest();
+            req.m_orderId = 200 + i;
+            req.m_requestType = RequestType.New;
+            req.m_price = 100.0;
+            req.m_qty = 10;
+            req.m_side = 'B';
+            om.onData(req);
+
+            OrderResponse resp = om.claimResponse();
+            resp.m_orderId = 200 + i;
+            resp.m_responseType = ResponseType.Accept;
+            om.onData(resp);
+        }
+        System.out.println("Pool misses: " + om.poolMisses());
+        om.stop();
+        // Expected: "Pool misses: 0"
+    }
+
+    private static void testBinaryEventJournal() {
+        System.out.println("\n--- Test: Binary Event Journal ---");
+        try {
+            Path journal = Files.createTempFile("oms-events-test", ".bin");
+            OrderManagementConfig config = new OrderManagementConfig(
+                    LocalTime.now().minusHours(1),
+                    LocalTime.now().plusHours(1),
+                    100
+            );
+            config.eventJournalPath = journal;
+            OrderManagement om = new OrderManagement(config);
+            OrderRequest req = new OrderRequest();
+            req.m_orderId = 300;
+            req.m_requestType = RequestType.New;
+            req.m_price = 100.0;
+            req.m_qty = 10;
+            req.m_side = 'B';
+            om.onData(req);
+            OrderResponse resp = new OrderResponse();
+            resp.m_orderId = 300;
+            resp.m_responseType = ResponseType.Accept;
+            om.onData(resp);
+            om.stop(); // Flushes the journal
+            BinaryEventJournal.dump(journal, System.out);
+            Files.delete(journal);
+            // Expected: a logon record (type=4), order sent (type=1), response (type=3)
+        } catch (IOException e) {
+            System.out.println("Journal test failed: " + e);
+        }
+    }
+
+    private static void testJournalRecovery() {
+        System.out.println("\n--- Test: Journal Recovery ---");
+        try {
+            Path journal = Files.createTempFile("oms-orders-test", ".wal");
+            OrderManagementConfig config = new OrderManagementConfig(
+                    LocalTime.now().minusHours(1),
+                    LocalTime.now().plusHours(1),
+                    1
+            );
+            config.orderJournalPath = journal;
+            config.orderJournalInitialRecords = 4; // Forces the journal to grow
+            config.eventSink = new ConsoleEventSink();
+            OrderManagement om = new OrderManagement(config);
+            for (int i = 0; i < 3; i++) {
+                OrderRequest req = new OrderRequest();
+                req.m_orderId = 400 + i;
+                req.m_requestType = RequestType.New;
+                req.m_price = 100.0;
+                req.m_qty = 10;
+                req.m_side = 'B';
+                om.onData(req); // 400 sent, 401 and 402 queued
+            }
+            OrderRequest cancel = new OrderRequest();
+            cancel.m_orderId = 401;
+            cancel.m_requestType = RequestType.Cancel;
+            om.onData(cancel);
+            om.stop();
+
+            OrderManagement recovered = new OrderManagement(config);
+            System.out.println("Recovered orders (pending + in flight): "
+                    + (recovered.pendingOrderCount() + recovered.inFlightOrderCount()));
+            recovered.stop();
+            Files.delete(journal);
+            // Expected: "Recovered orders (pending + in flight): 2" (400 and 402)
+        } catch (IOException e) {
+            System.out.println("Recovery test failed: " + e);
+        }
+    }
+
+    private static void testLatencySnapshot() {
+        System.out.println("\n--- Test: Latency Snapshot ---");
+        OrderManagement om = newConsoleOms(
+                LocalTime.now().minusHours(1),
+                LocalTime.now().plusHours(1),
+                100
+        );
+        for (int i = 0; i < 4; i++) {
+            OrderRequest req = new OrderRequest();
+            req.m_orderId = 500 + i;
+            req.m_symbolId = i % 2;
+            req.m_requestType = RequestType.New;
+            req.m_price = 100.0;
+            req.m_qty = 10;
+            req.m_side = 'B';
+            om.onData(req);
+
+            OrderResponse resp = new OrderResponse();
+            resp.m_orderId = 500 + i;
+            resp.m_responseType = i == 3 ? ResponseType.Reject : ResponseType.Accept;
+            om.onData(resp);
+        }
+        LatencySnapshot snapshot = om.latencySnapshot(true);
+        System.out.println("Overall: " + snapshot.overall);
+        System.out.println("By type: " + snapshot.byResponseType.keySet() + ", by symbol: " + snapshot.bySymbol.keySet());
+        System.out.println("After reset: " + om.latencySnapshot(false).overall.count);
+        om.stop();
+        // Expected: "Overall: count=4 ...", "By type: [Accept, Reject], by symbol: [0, 1]", "After reset: 0"
+    }
+
+    private static void testPerSymbolThrottle() {
+        System.out.println("\n--- Test: Per-Symbol Throttle (1 order/sec per symbol) ---");
+        OrderManagementConfig config = new OrderManagementConfig(
+                LocalTime.now().minusHours(1),
+                LocalTime.now().plusHours(1),
+                100
+        );
+        config.maxOrdersPerSecondPerSymbol = 1;
+        config.symbolThrottleBurst = 1;
+        config.eventSink = new ConsoleEventSink();
+        OrderManagement om = new OrderManagement(config);
+        for (int i = 0; i < 4; i++) {
+            OrderRequest req = new OrderRequest();
+            req.m_orderId = 600 + i;
+            req.m_symbolId = i < 3 ? 1 : 2; // Burst on symbol 1, then one order on symbol 2
+            req.m_requestType = RequestType.New;
+            req.m_price = 100.0;
+            req.m_qty = 10;
+            req.m_side = 'B';
+            om.onData(req);
+        }
+        System.out.println("Pending: " + om.pendingOrderCount());
+        om.stop();
+        // Expected: "Sending order: 600", "Sending order: 603", "Pending: 2"
+    }
+
+    private static void testShardedEngine() {
+        System.out.println("\n--- Test: Sharded Engine (4 shards, 2 orders/sec shared) ---");
+        OrderManagementConfig config = new OrderManagementConfig(
+                LocalTime.now().minusHours(1),
+                LocalTime.now().plusHours(1),
+                2
+        );
+        config.eventSink = new ConsoleEventSink();
+        ShardedOrderManagement engine = new ShardedOrderManagement(config, 4);
+        for (int i = 0; i < 4; i++) {
+            OrderRequest req = new OrderRequest();
+            req.m_orderId = 700 + i;
+            req.m_symbolId = i; // One order per shard
+            req.m_requestType = RequestType.New;
+            req.m_price = 100.0;
+            req.m_qty = 10;
+            req.m_side = 'B';
+            engine.onData(req);
+        }
+        try {
+            Thread.sleep(50);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.println("In flight: " + engine.inFlightOrderCount() + ", pending: " + engine.pendingOrderCount());
+        long tickers = Thread.getAllStackTraces().keySet().stream()
+                .filter(t -> t.getName().startsWith("oms-timing-wheel-shard"))
+                .count();
+        System.out.println("Shard tickers: " + tickers);
+        engine.stop();
+        // Expected: two "Sending order" lines, "In flight: 2, pending: 2", "Shard tickers: 4"
+    }
+
+    private static void testBatchIngest() {
+        System.out.println("\n--- Test: Batch Ingest (1 order/sec) ---");
+        OrderManagement om = newConsoleOms(
+                LocalTime.now().minusHours(1),
+                LocalTime.now().plusHours(1),
+                1
+        );
+        RequestType[] types = {RequestType.New, RequestType.New, RequestType.New, RequestType.Modify,
+                RequestType.Cancel, RequestType.Cancel};
+        long[] ids = {800, 801, 802, 801, 802, 999};
+        OrderRequest[] batch = new OrderRequest[types.length];
+        for (int i = 0; i < batch.length; i++) {
+            batch[i] = new OrderRequest();
+            batch[i].m_orderId = ids[i];
+            batch[i].m_requestType = types[i];
+            batch[i].m_price = 100.0;
+            batch[i].m_qty = 10;
+            batch[i].m_side = 'B';
+        }
+        RequestOutcome[] outcomes = new RequestOutcome[batch.length];
+        om.onData(batch, 0, batch.length, outcomes);
+        System.out.println("Outcomes: " + java.util.Arrays.toString(outcomes));
+        om.stop();
+        // Expected: "Outcomes: [Sent, Queued, Queued, Modified, Cancelled, NotFound]"
+    }
+
+    private static void testTransmitBatching() {
+        System.out.println("\n--- Test: Transmit Batching (batches of 4) ---");
+        OrderManagementConfig config = new OrderManagementConfig(
+                LocalTime.now().minusHours(1),
+                LocalTime.now().plusHours(1),
+                100
+        );
+        config.transmitBatchSize = 4;
+        config.transmitFlushMicros = 1000;
+        config.eventSink = new ConsoleEventSink();
+        OrderManagement om = new OrderManagement(config) {
+            @Override
+            public void transmitBatch(OrderRequest[] requests, int count) {
+                System.out.println("Batch of " + count + " starting at order " + requests[0].m_orderId);
+            }
+        };
+        for (int i = 0; i < 6; i++) {
+            OrderRequest req = new OrderRequest();
+            req.m_orderId = 900 + i;
+            req.m_requestType = RequestType.New;
+            req.m_price = 100.0;
+            req.m_qty = 10;
+            req.m_side = 'B';
+            om.onData(req);
+        }
+        try {
+            Thread.sleep(50); // Past the flush deadline
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.println("In flight: " + om.inFlightOrderCount());
+        om.stop();
+        // Expected: "Batch of 4 starting at order 900", "Batch of 2 starting at order 904", "In flight: 6"
+    }
+
+    private static void testWireCodec() {
+        System.out.println("\n--- Test: Wire Codec ---");
+        ByteBuffer buffer = ByteBuffer.allocateDirect(256).order(ByteOrder.LITTLE_ENDIAN);
+        OrderRequest req = new OrderRequest();
+        req.m_orderId = 1000;
+        req.m_symbolId = 7;
+        req.m_requestType = RequestType.New;
+        req.m_price = 101.25;
+        req.m_qty = 30;
+        req.m_side = 'S';
+        int length = OrderRequestFlyweight.encode(req, buffer, 0);
+
+        OrderRequestFlyweight flyweight = new OrderRequestFlyweight().wrap(buffer, 0);
+        System.out.println("Decoded in place: id=" + flyweight.orderId() + " symbol=" + flyweight.symbolId()
+                + " type=" + flyweight.requestType() + " price=" + flyweight.price() + " qty=" + flyweight.qty()
+                + " side=" + flyweight.side() + " length=" + length);
+
+        new OrderResponseFlyweight().wrapForEncode(buffer, length)
+                .orderId(1000).symbolId(7).responseType(ResponseType.Accept);
+
+        OrderManagementConfig config = new OrderManagementConfig(
+                LocalTime.now().minusHours(1),
+                LocalTime.now().plusHours(1),
+                100
+        );
+        config.messagePoolSize = 4;
+        config.eventSink = new ConsoleEventSink();
+        OrderManagement om = new OrderManagement(config);
+        int offset = 0;
+        while (offset < length + OrderResponseFlyweight.ENCODED_LENGTH) {
+            offset += om.onData(buffer, offset);
+        }
+        om.stop();
+        // Expected: "Decoded in place: id=1000 symbol=7 type=New price=101.25 qty=30 side=S length=40",
+        // "Sending order: 1000", "Response: ID=1000, Status=Accept, ..."
+    }
+
+    private static void testExchangeSession() {
+        System.out.println("\n--- Test: Exchange Session (loopback) ---");
+        try (ExchangeSimulator exchange = new ExchangeSimulator()) {
+            OrderManagementConfig config = new OrderManagementConfig(
+                    LocalTime.now().minusHours(1),
+                    LocalTime.now().plusHours(1),
+                    100
+            );
+            config.exchangeAddress = exchange.address();
+            config.heartbeatIntervalMillis = 20;
+            config.eventSink = new ConsoleEventSink();
+            OrderManagement om = new OrderManagement(config);
+            for (int i = 0; i < 3; i++) {
+                OrderRequest req = new OrderRequest();
+                req.m_orderId = 1100 + i;
+                req.m_symbolId = i;
+                req.m_requestType = RequestType.New;
+                req.m_price = 100.0;
+                req.m_qty = 10;
+                req.m_side = 'B';
+                om.onData(req);
+            }
+            Thread.sleep(200);
+            System.out.println("Session: " + om.exchangeSessionState() + ", exchange received "
+                    + exchange.requestsReceived() + " orders, heartbeats sent: " + (exchange.heartbeatsReceived() > 0)
+                    + ", in flight: " + om.inFlightOrderCount());
+            om.stop();
+        } catch (IOException | InterruptedException e) {
+            System.out.println("Exchange session test failed: " + e);
+        }
+        // Expected: "Sending order: 1100".."1102", three "Response: ID=110x, Status=Accept" lines,
+        // "Session: LoggedOn, exchange received 3 orders, heartbeats sent: true, in flight: 0"
+    }
+
+    private static void testInFlightTimeout() {
+        System.out.println("\n--- Test: In-Flight Timeout (50ms) ---");
+        OrderManagementConfig config = new OrderManagementConfig(
+                LocalTime.now().minusHours(1),
+                LocalTime.now().plusHours(1),
+                100
+        );
+        config.inFlightTimeoutMillis = 50;
+        config.eventSink = new ConsoleEventSink();
+        OrderManagement om = new OrderManagement(config);
+        for (int i = 0; i < 2; i++) {
+            OrderRequest req = new OrderRequest();
+            req.m_orderId = 1200 + i;
+            req.m_requestType = RequestType.New;
+            req.m_price = 100.0;
+            req.m_qty = 10;
+            req.m_side = 'B';
+            om.onData(req);
+        }
+        OrderResponse resp = new OrderResponse();
+        resp.m_orderId = 1200;
+        resp.m_responseType = ResponseType.Accept;
+        om.onData(resp);
+        try {
+            Thread.sleep(150);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.println("In flight: " + om.inFlightOrderCount() + ", timed out: " + om.timedOutOrderCount());
+        om.stop();
+        // Expected: "[Timeout] No response for order 1201 after 5xms", "In flight: 0, timed out: 1"
+    }
+
+    private static void testSharedScheduler() {
+        System.out.println("\n--- Test: Shared Timing Wheel (200 instances) ---");
+        TimingWheelScheduler scheduler = new TimingWheelScheduler(TimingWheelScheduler.DEFAULT_TICK_NANOS, 1024);
+        int threadsBefore = Thread.activeCount();
+        OrderManagement[] instances = new OrderManagement[200];
+        for (int i = 0; i < instances.length; i++) {
+            OrderManagementConfig config = new OrderManagementConfig(
+                    LocalTime.now().minusHours(1),
+                    LocalTime.now().plusHours(1),
+                    100
+            );
+            config.scheduler = scheduler;
+            config.eventSink = new SilentEventSink();
+            instances[i] = new OrderManagement(config);
+        }
+        System.out.println("Scheduled tasks: " + scheduler.taskCount()
+                + ", new threads: " + (Thread.activeCount() - threadsBefore));
+        for (OrderManagement om : instances) {
+            om.stop();
+        }
+        System.out.println("Scheduled tasks after stop: " + scheduler.taskCount());
+        scheduler.shutdown();
+        // Expected: "Scheduled tasks: 600, new threads: 0", "Scheduled tasks after stop: 0"
+    }
+
+    private static void testVirtualThreadMode() {
+        System.out.println("\n--- Test: Virtual Thread Execution Mode (20 orders/sec) ---");
+        System.out.println("Virtual threads supported: " + VirtualThreads.isSupported());
+        OrderManagementConfig config = new OrderManagementConfig(
+                LocalTime.now().minusHours(1),
+                LocalTime.now().plusHours(1),
+                20
+        );
+        config.throttleBurst = 1;
+        config.executionMode = ExecutionMode.VirtualThreads;
+        config.eventSink = new ConsoleEventSink();
+        OrderManagement om = new OrderManagement(config);
+        for (int i = 0; i < 3; i++) {
+            OrderRequest req = new OrderRequest();
+            req.m_orderId = 1300 + i;
+            req.m_requestType = RequestType.New;
+            req.m_price = 100.0;
+            req.m_qty = 10;
+            req.m_side = 'B';
+            om.onData(req);
+        }
+        System.out.println("Pending: " + om.pendingOrderCount());
+        try {
+            Thread.sleep(200); // two permits at 50ms each
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.println("Pending: " + om.pendingOrderCount());
+        om.stop();
+        // Expected: "Sending order: 1300", "Pending: 2", "Sending order: 1301", "Sending order: 1302", "Pending: 0"
+    }
+
+    private static void testTradingSchedule() {
+        System.out.println("\n--- Test: Trading Schedule ---");
+        TradingSchedule schedule = TradingSchedule.builder()
+                .zone(ZoneOffset.UTC)
+                .session(LocalTime.of(9, 0), LocalTime.of(12, 0))
+                .session(LocalTime.of(13, 0), LocalTime.of(16, 0))
+                .session(LocalTime.of(22, 0), LocalTime.of(2, 0)) // overnight
+                .holiday(LocalDate.of(2024, 12, 25))
+                .closedOn(DayOfWeek.SATURDAY, DayOfWeek.SUNDAY)
+                .build();
+        String[] times = {
+                "2024-12-24T12:30:00Z", // lunch break
+                "2024-12-24T23:00:00Z", // overnight session
+                "2024-12-25T01:00:00Z", // overnight session from the 24th, on the holiday
+                "2024-12-25T10:00:00Z", // holiday
+                "2024-12-27T23:30:00Z", // Friday night session runs into Saturday
+                "2024-12-28T10:00:00Z"  // Saturday
+        };
+        for (String time : times) {
+            Instant instant = Instant.parse(time);
+            System.out.println(time + " open=" + schedule.isOpen(instant) + " next=" + schedule.nextTransition(instant));
+        }
+
+        OrderManagementConfig config = new OrderManagementConfig(
+                LocalTime.now().minusHours(1),
+                LocalTime.now().plusHours(1),
+                100
+        );
+        LocalTime close = LocalTime.now().plusNanos(150_000_000);
+        config.tradingSchedule = TradingSchedule.daily(LocalTime.now().minusHours(1), close);
+        config.eventSink = new ConsoleEventSink() {
+            @Override
+            public void onLogout() {
+                super.onLogout();
+                System.out.println("Logout " + (LocalTime.now().toNanoOfDay() - close.toNanoOfDay()) / 1_000_000
+                        + "ms after close");
+            }
+        };
+        OrderManagement om = new OrderManagement(config);
+        try {
+            Thread.sleep(300);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        OrderRequest req = new OrderRequest();
+        req.m_orderId = 1400;
+        req.m_requestType = RequestType.New;
+        req.m_price = 100.0;
+        req.m_qty = 10;
+        req.m_side = 'B';
+        om.onData(req);
+        om.stop();
+        // Expected: open=false next=2024-12-24T13:00:00Z, open=true next=2024-12-25T02:00:00Z,
+        // open=true next=2024-12-25T02:00:00Z, open=false next=2024-12-26T09:00:00Z,
+        // open=true next=2024-12-28T02:00:00Z, open=false next=2024-12-30T09:00:00Z,
+        // "Logout 0ms after close", "[Rejected] Order outside trading hours"
+    }
+
+    private static void testAmendPriority() {
+        System.out.println("\n--- Test: Amend Priority Lane (20 orders/sec) ---");
+        OrderManagementConfig config = new OrderManagementConfig(
+                LocalTime.now().minusHours(1),
+                LocalTime.now().plusHours(1),
+                20
+        );
+        config.throttleBurst = 1;
+        config.eventSink = new ConsoleEventSink();
+        OrderManagement om = new OrderManagement(config);
+        for (int i = 0; i < 3; i++) {
+            OrderRequest req = new OrderRequest();
+            req.m_orderId = 2200 + i;
+            req.m_requestType = RequestType.New;
+            req.m_price = 100.0;
+            req.m_qty = 10;
+            req.m_side = 'B';
+            om.onData(req);
+        }
+        OrderRequest cancel = new OrderRequest();
+        cancel.m_orderId = 2200; // already at the exchange
+        cancel.m_requestType = RequestType.Cancel;
+        om.onData(cancel);
+        System.out.println("Pending: " + om.pendingOrderCount());
+        try {
+            Thread.sleep(75); // one permit
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.println("Pending: " + om.pendingOrderCount());
+        om.stop();
+        // Expected: "Sending order: 2200", "Pending: 3", "Sending order: 2200" (the cancel), "Pending: 2"
+    }
+
+    private static void testAmendCoalescing() {
+        System.out.println("\n--- Test: Amend Coalescing ---");
+        OrderManagementConfig config = new OrderManagementConfig(
+                LocalTime.now().minusHours(1),
+                LocalTime.now().plusHours(1),
+                100
+        );
+        config.eventSink = new ConsoleEventSink() {
+            @Override
+            public void onOrderSent(OrderRequest order) {
+                System.out.println("Sending " + order.m_requestType + " " + order.m_orderId + " @ " + order.m_price);
+            }
+        };
+        OrderManagement om = new OrderManagement(config);
+        om.onData(request(2300, RequestType.New, 100.0));
+        om.onData(accept(2300, RequestType.New));
+        for (int i = 1; i <= 4; i++) {
+            om.onData(request(2300, RequestType.Modify, 100.0 + i)); // first goes out, the rest wait for its ack
+        }
+        System.out.println("Pending: " + om.pendingOrderCount() + ", coalesced: " + om.coalescedAmendCount());
+        om.onData(accept(2300, RequestType.Modify)); // replace acked - the latest Modify goes
+        om.onData(request(2300, RequestType.Modify, 110.0)); // held behind the second replace
+        om.onData(request(2300, RequestType.Cancel, 0.0)); // supersedes it and goes straight out
+        System.out.println("Pending: " + om.pendingOrderCount() + ", coalesced: " + om.coalescedAmendCount());
+        om.stop();
+        // Expected: "Sending New 2300 @ 100.0", "Sending Modify 2300 @ 101.0", "Pending: 1, coalesced: 2",
+        // "Sending Modify 2300 @ 104.0", "Sending Cancel 2300 @ 0.0", "Pending: 0, coalesced: 3"
+    }
+
+    private static void testOffHeapBacklog() {
+        System.out.println("\n--- Test: Off-Heap Order Store (1 order/sec) ---");
+        OrderManagementConfig config = new OrderManagementConfig(
+                LocalTime.now().minusHours(1),
+                LocalTime.now().plusHours(1),
+                1
+        );
+        config.orderStoreInitialCapacity = 16; // the store has to grow
+        config.eventSink = new ConsoleEventSink() {
+            @Override
+            public void onOrderSent(OrderRequest order) {
+                System.out.println("Sending " + order.m_requestType + " " + order.m_orderId + " @ " + order.m_price
+                        + " x " + order.m_qty);
+            }
+        };
+        OrderManagement om = new OrderManagement(config);
+        om.onData(request(2400, RequestType.New, 100.0)); // sent
+        om.onData(request(2401, RequestType.New, 100.0));
+        om.onData(request(2402, RequestType.New, 100.0));
+        for (int i = 0; i < 100_000; i++) {
+            OrderRequest req = request(10_000 + i, RequestType.New, 100.0);
+            req.m_symbolId = 1 + i % 100;
+            om.onData(req);
+        }
+        OrderRequest modify = request(2401, RequestType.Modify, 99.5);
+        modify.m_qty = 25;
+        om.onData(modify);
+        om.onData(request(2402, RequestType.Cancel, 0.0));
+        System.out.println("Pending: " + om.pendingOrderCount());
+        try {
+            Thread.sleep(1100); // one permit, and symbol 0 is first in the rotation
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.println("Pending: " + om.pendingOrderCount());
+        om.stop();
+        // Expected: "Sending New 2400 @ 100.0 x 10", "Pending: 100001", "Sending New 2401 @ 99.5 x 25",
+        // "Pending: 100000"
+    }
+
+    private static void testFixedPointPrices() {
+        System.out.println("\n--- Test: Fixed-Point Prices (20 orders/sec) ---");
+        PriceScales scales = new PriceScales(1 << 16, 2).set(8, 4);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(256).order(ByteOrder.LITTLE_ENDIAN);
+        OrderRequest quote = request(2500, RequestType.New, 0.0);
+        quote.m_symbolId = 8;
+        quote.m_fixedPrice = scales.toFixed(8, 0.1234);
+        OrderRequestFlyweight.encode(quote, buffer, 0, scales.scale(8));
+        OrderRequestFlyweight flyweight = new OrderRequestFlyweight().wrap(buffer, 0);
+        System.out.println("Decoded in place: fixedPoint=" + flyweight.isFixedPointPrice() + " price="
+                + flyweight.fixedPrice() + " scale=" + flyweight.priceScale());
+
+        OrderManagementConfig config = new OrderManagementConfig(
+                LocalTime.now().minusHours(1),
+                LocalTime.now().plusHours(1),
+                20
+        );
+        config.throttleBurst = 1;
+        config.priceScales = scales;
+        config.eventSink = new ConsoleEventSink() {
+            @Override
+            public void onOrderSent(OrderRequest order) {
+                System.out.println("Sending " + order.m_requestType + " " + order.m_orderId + " @ "
+                        + order.m_fixedPrice + " (" + scales.toDouble(order.m_symbolId, order.m_fixedPrice) + ")");
+            }
+        };
+        OrderManagement om = new OrderManagement(config);
+        for (int i = 0; i < 2; i++) {
+            OrderRequest req = request(2510 + i, RequestType.New, 0.0);
+            req.m_symbolId = 7;
+            req.m_fixedPrice = scales.toFixed(7, 101.25);
+            om.onData(req); // first sent, second queued
+        }
+        OrderRequest modify = request(2511, RequestType.Modify, 0.0);
+        modify.m_symbolId = 7;
+        modify.m_fixedPrice = 10150;
+        int length = OrderRequestFlyweight.encode(modify, buffer, 0, scales.scale(7));
+        om.onData(buffer, 0); // decoded into m_fixedPrice, applied to the queued order
+        System.out.println("Pending: " + om.pendingOrderCount() + ", encoded length=" + length);
+        try {
+            Thread.sleep(75); // one permit
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        om.stop();
+        // Expected: "Decoded in place: fixedPoint=true price=1234 scale=4", "Sending New 2510 @ 10125 (101.25)",
+        // "Pending: 1, encoded length=40", "Sending New 2511 @ 10150 (101.5)"
+    }
+
+    private static void testPreTradeRiskChecks() {
+        System.out.println("\n--- Test: Pre-Trade Risk Checks (1 order/sec) ---");
+        int symbols = 1 << 16;
+        PriceScales scales = new PriceScales(symbols, 2);
+        FatFingerCheck fatFinger = new FatFingerCheck(symbols, 500); // 5% off the reference
+        fatFinger.setReferencePrice(0, scales.toFixed(0, 100.0));
+        PreTradeRiskChain chain = new PreTradeRiskChain(scales)
+                .add(new MaxQtyCheck(symbols, 1_000))
+                .add(new PriceBandCheck(symbols).set(0, scales.toFixed(0, 50.0), scales.toFixed(0, 200.0)))
+                .add(new MaxNotionalCheck(symbols, scales.toFixed(0, 50_000.0)))
+                .add(fatFinger);
+        try {
+            Path journal = Files.createTempFile("oms-orders-risk", ".wal");
+            OrderManagementConfig config = new OrderManagementConfig(
+                    LocalTime.now().minusHours(1),
+                    LocalTime.now().plusHours(1),
+                    1
+            );
+            config.preTradeChecks = chain;
+            config.orderJournalPath = journal;
+            config.eventSink = new ConsoleEventSink();
+            config.symbolCapacity = symbols + 1;
+            try {
+                new OrderManagement(config).stop();
+            } catch (IllegalArgumentException e) {
+                System.out.println("Chain smaller than symbolCapacity refused: " + e.getMessage());
+            }
+            config.symbolCapacity = symbols;
+            OrderManagement om = new OrderManagement(config);
+            OrderRequest unknown = request(2699, RequestType.New, 100.0);
+            unknown.m_symbolId = symbols;
+            om.onData(unknown);
+            double[] prices = {100.0, 101.0, 250.0, 120.0, 110.0, 99.0};
+            long[] qtys = {10, 5_000, 10, 450, 10, 10};
+            for (int i = 0; i < prices.length; i++) {
+                OrderRequest req = request(2600 + i, RequestType.New, prices[i]);
+                req.m_qty = qtys[i];
+                om.onData(req);
+            }
+            // Modifies are checked on the amended order, queued or live
+            OrderRequest bigger = request(2605, RequestType.Modify, 99.0);
+            bigger.m_qty = 5_000;
+            om.onData(bigger);
+            om.onData(request(2600, RequestType.Modify, 300.0));
+            System.out.println("Pending: " + om.pendingOrderCount());
+            for (int i = 0; i < chain.size(); i++) {
+                System.out.println(chain.name(i) + " rejections: " + chain.rejections(i));
+            }
+            om.stop();
+
+            // Rejected requests never reached the journal, so a restart brings back 2600 and 2605 only
+            OrderManagement recovered = new OrderManagement(config);
+            System.out.println("Recovered orders (pending + in flight): "
+                    + (recovered.pendingOrderCount() + recovered.inFlightOrderCount()));
+            recovered.stop();
+            Files.delete(journal);
+        } catch (IOException e) {
+            System.out.println("Risk check test failed: " + e);
+        }
+        // Expected: "Chain smaller than symbolCapacity refused: Pre-trade checks cover 65536 symbols, symbolCapacity
+        // is 65537", "[Rejected] Order 2699: InvalidSymbol", "Sending order: 2600", "[Rejected] Order 2601: RiskLimit" (qty),
+        // "[Rejected] Order 2602: RiskLimit" (band), "[Rejected] Order 2603: RiskLimit" (notional),
+        // "[Rejected] Order 2604: RiskLimit" (fat finger), "[Rejected] Order 2605: RiskLimit" (modify, queued),
+        // "[Rejected] Order 2600: RiskLimit" (modify, live),
+        // "Pending: 1" (2605 passed, queued behind the throttle),
+        // "MaxQty rejections: 2", "PriceBand rejections: 2", "MaxNotional rejections: 1", "FatFinger rejections: 1",
+        // "Recovered orders (pending + in flight): 2"
+    }
+
+    private static void testZeroRateRejected() {
+        System.out.println("\n--- Test: Zero Order Rate ---");
+        try {
+            newConsoleOms(LocalTime.now().minusHours(1), LocalTime.now().plusHours(1), 0);
+            System.out.println("Created");
+        } catch (IllegalArgumentException e) {
+            System.out.println("Rejected: " + e.getMessage());
+        }
+        // Expected: "Rejected: maxOrdersPerSecond must be positive: 0"
+    }
+
+    private static void testCancelBufferedOrder() {
+        System.out.println("\n--- Test: Cancel Of A Buffered Order (batches of 4) ---");
+        OrderManagementConfig config = new OrderManagementConfig(
+                LocalTime.now().minusHours(1),
+                LocalTime.now().plusHours(1),
+                100
+        );
+        config.transmitBatchSize = 4;
+        config.transmitFlushMicros = 1000;
+        config.eventSink = new ConsoleEventSink();
+        OrderManagement om = new OrderManagement(config) {
+            @Override
+            public void transmitBatch(OrderRequest[] requests, int count) {
+                for (int i = 0; i < count; i++) {
+                    System.out.println("Transmit " + requests[i].m_requestType + " " + requests[i].m_orderId);
+                }
+            }
+        };
+        om.onData(request(2800, RequestType.New, 100.0)); // Buffered, not yet flushed
+        om.onData(request(2800, RequestType.Cancel, 0.0));
+        try {
+            Thread.sleep(50); // Past the flush deadline
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        om.stop();
+        // Expected: "Transmit New 2800", "Transmit Cancel 2800" (the New is live while buffered,
+        // so the Cancel follows it out in the same batch)
+    }
+
+    private static void testLiveOrderCleanup() {
+        System.out.println("\n--- Test: Live Order Cleanup (50 ms in-flight timeout) ---");
+        OrderManagementConfig config = new OrderManagementConfig(
+                LocalTime.now().minusHours(1),
+                LocalTime.now().plusHours(1),
+                100
+        );
+        config.inFlightTimeoutMillis = 50;
+        config.eventSink = new ConsoleEventSink() {
+            @Override
+            public void onOrderSent(OrderRequest order) {
+                System.out.println("Sending " + order.m_requestType + " " + order.m_orderId + " @ " + order.m_price);
+            }
+        };
+        OrderManagement om = new OrderManagement(config);
+        RequestOutcome[] outcome = new RequestOutcome[1];
+        om.onData(request(2900, RequestType.New, 100.0));
+        om.onData(accept(2900, RequestType.New));
+        om.onData(request(2900, RequestType.Modify, 101.0)); // replace outstanding
+        om.onData(request(2900, RequestType.Modify, 102.0)); // held behind it
+        om.onData(accept(2900, RequestType.New)); // a duplicate New ack doesn't release the held replace
+        System.out.println("Coalesced: " + om.coalescedAmendCount());
+        OrderResponse fill = accept(2900, RequestType.Modify);
+        fill.m_responseType = ResponseType.Filled;
+        om.onData(fill);
+        om.onData(new OrderRequest[] {request(2900, RequestType.Cancel, 0.0)}, 0, 1, outcome);
+        System.out.println("Cancel after fill: " + outcome[0]);
+
+        om.onData(request(2901, RequestType.New, 100.0)); // never answered
+        try {
+            Thread.sleep(200); // Past the timeout
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        om.onData(new OrderRequest[] {request(2901, RequestType.Cancel, 0.0)}, 0, 1, outcome);
+        System.out.println("Cancel after timeout: " + outcome[0]);
+        om.stop();
+        // Expected: "Sending New 2900 @ 100.0", "Sending Modify 2900 @ 101.0", "Coalesced: 0",
+        // (the fill drops the held Modify @ 102.0), "Cancel after fill: NotFound",
+        // "Sending New 2901 @ 100.0", a timeout event for 2901, "Cancel after timeout: NotFound"
+    }
+
+    private static void testPriceScaleMismatch() {
+        System.out.println("\n--- Test: Price Scale Mismatch (receiver scale 2) ---");
+        PriceScales scales = new PriceScales(1 << 16, 2);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(256).order(ByteOrder.LITTLE_ENDIAN);
+        OrderRequest sent = request(3000, RequestType.New, 101.25);
+        OrderRequest received = new OrderRequest(); // reused, like a pooled request
+
+        sent.m_fixedPrice = 1_012_500; // 101.25 at scale 4
+        OrderRequestFlyweight.encode(sent, buffer, 0, 4);
+        OrderRequestFlyweight.decode(buffer, 0, received, scales);
+        System.out.println("Scale 4 -> 2: " + received.m_fixedPrice + " (" + received.m_price + ")");
+
+        sent.m_fixedPrice = 1013; // 101.3 at scale 1
+        OrderRequestFlyweight.encode(sent, buffer, 0, 1);
+        OrderRequestFlyweight.decode(buffer, 0, received, scales);
+        System.out.println("Scale 1 -> 2: " + received.m_fixedPrice + " (" + received.m_price + ")");
+
+        OrderRequestFlyweight.encode(sent, buffer, 0); // double 101.25
+        OrderRequestFlyweight.decode(buffer, 0, received, scales);
+        System.out.println("Double -> 2: " + received.m_fixedPrice + " (" + received.m_price + ")");
+
+        OrderRequestFlyweight.decode(buffer, 0, received); // double mode: no stale fixed-point price
+        System.out.println("Double, no scales: " + received.m_price + ", fixed " + received.m_fixedPrice);
+
+        sent.m_fixedPrice = 1_012_512; // 101.2512 - finer than the receiver's tick
+        OrderRequestFlyweight.encode(sent, buffer, 0, 4);
+        System.out.println("Scale 4 -> 2, sub-tick: " + OrderRequestFlyweight.decode(buffer, 0, received, scales));
+
+        OrderManagementConfig config = new OrderManagementConfig(
+                LocalTime.now().minusHours(1),
+                LocalTime.now().plusHours(1),
+                100
+        );
+        config.priceScales = scales;
+        config.eventSink = new ConsoleEventSink();
+        OrderManagement om = new OrderManagement(config);
+        System.out.println("Consumed: " + om.onData(buffer, 0));
+        om.stop();
+        // Expected: "Scale 4 -> 2: 10125 (101.25)", "Scale 1 -> 2: 10130 (101.3)", "Double -> 2: 10125 (101.25)",
+        // "Double, no scales: 101.25, fixed 0", "Scale 4 -> 2, sub-tick: -1",
+        // "[Rejected] Order 3000: InvalidPrice", "Consumed: 40"
+    }
+
+    private static void testExchangeSessionRecovery() {
+        System.out.println("\n--- Test: Exchange Session Recovery (raw exchange socket) ---");
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            OrderManagementConfig config = new OrderManagementConfig(
+                    LocalTime.now().minusHours(1),
+                    LocalTime.now().plusHours(1),
+                    100
+            );
+            config.exchangeAddress = (InetSocketAddress) server.getLocalAddress();
+            config.eventSink = new ConsoleEventSink();
+            OrderManagement om = new OrderManagement(config);
+            om.onData(request(3100, RequestType.New, 100.0)); // held until the Logon is acked
+            SocketChannel first = server.accept();
+            Thread.sleep(100);
+            first.configureBlocking(false);
+            System.out.println("Bytes before the logon ack: " + first.read(ByteBuffer.allocate(256)));
+
+            ByteBuffer garbage = ByteBuffer.allocate(WireFormat.HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+            garbage.putShort((short) -1).putShort(WireFormat.ORDER_RESPONSE_TEMPLATE_ID).putShort((short) 1)
+                    .putShort((short) 1).flip();
+            first.write(garbage); // negative block length: the session drops the connection
+
+            server.configureBlocking(false);
+            SocketChannel second = null;
+            for (int i = 0; i < 200 && second == null; i++) {
+                Thread.sleep(10);
+                second = server.accept();
+            }
+            System.out.println("Reconnected: " + (second != null) + ", in flight: " + om.inFlightOrderCount());
+            om.stop();
+            first.close();
+            if (second != null) {
+                second.close();
+            }
+        } catch (IOException | InterruptedException e) {
+            System.out.println("Exchange session recovery test failed: " + e);
+        }
+        // Expected: "Sending order: 3100", "Bytes before the logon ack: 8" (the Logon only),
+        // a protocol error on stderr, "[Rejected] Order 3100: NotTransmitted",
+        // "Reconnected: true, in flight: 0"
+    }
+
+    private static void testJournalCompaction() {
+        System.out.println("\n--- Test: Journal Compaction (16-record journal, 1 order/sec) ---");
+        try {
+            Path journal = Files.createTempFile("oms-orders-compact", ".wal");
+            OrderManagementConfig config = new OrderManagementConfig(
+                    LocalTime.now().minusHours(1),
+                    LocalTime.now().plusHours(1),
+                    1
+            );
+            config.orderJournalPath = journal;
+            config.orderJournalInitialRecords = 16;
+            config.eventSink = new SilentEventSink();
+            OrderManagement om = new OrderManagement(config);
+            om.onData(request(3200, RequestType.New, 100.0)); // sent
+            for (int i = 1; i <= 300; i++) {
+                om.onData(request(3200 + i, RequestType.New, 100.0)); // queued behind the throttle
+                om.onData(request(3200 + i, RequestType.Cancel, 0.0));
+            }
+            om.onData(request(3501, RequestType.New, 100.0));
+            om.onData(request(3502, RequestType.New, 100.0));
+            System.out.println("Journal file after 603 requests: " + Files.size(journal) + " bytes");
+            om.stop();
+
+            OrderManagement recovered = new OrderManagement(config);
+            System.out.println("Recovered orders (pending + in flight): "
+                    + (recovered.pendingOrderCount() + recovered.inFlightOrderCount()));
+            recovered.stop();
+            Files.delete(journal);
+        } catch (IOException e) {
+            System.out.println("Compaction test failed: " + e);
+        }
+        // Expected: "Journal file after 603 requests: 640 bytes" (16 records, compacted instead of grown),
+        // "Recovered orders (pending + in flight): 3" (3200, 3501 and 3502)
+    }
+
+    private static void testDefaultEventJournal() {
+        System.out.println("\n--- Test: Default Event Journal (3 instances, no sink or path) ---");
+        try {
+            Path directory = Files.createTempDirectory("oms-events-test");
+            OrderManagement[] oms = new OrderManagement[3];
+            for (int i = 0; i < oms.length; i++) {
+                OrderManagementConfig config = new OrderManagementConfig(
+                        LocalTime.now().minusHours(1),
+                        LocalTime.now().plusHours(1),
+                        10
+                );
+                config.eventJournalDirectory = directory;
+                oms[i] = new OrderManagement(config);
+                oms[i].onData(request(3600 + i, RequestType.New, 100.0));
+            }
+            long flushers = Thread.getAllStackTraces().keySet().stream()
+                    .filter(t -> t.getName().equals("oms-journal-flusher")).count();
+            System.out.println("Flusher threads: " + flushers);
+            for (OrderManagement om : oms) {
+                om.stop();
+            }
+            try (Stream<Path> files = Files.list(directory)) {
+                long kept = 0;
+                long records = 0;
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    kept++;
+                    records += Files.size(file) / BinaryEventJournal.RECORD_SIZE;
+                    Files.delete(file);
+                }
+                System.out.println("Journals kept after stop: " + kept + ", records: " + records);
+            }
+            Files.delete(directory);
+        } catch (IOException e) {
+            System.out.println("Default event journal test failed: " + e);
+        }
+        // Expected: three "Event journal: <temp dir>/oms-events-<pid>-<n>.bin" lines, "Flusher threads: 1",
+        // "Journals kept after stop: 3, records: 6" (logon and send for each)
+    }
+
+    private static void testShardedSessions() {
+        System.out.println("\n--- Test: Sharded Sessions (2 shards, one exchange address each) ---");
+        try (ExchangeSimulator first = new ExchangeSimulator(); ExchangeSimulator second = new ExchangeSimulator()) {
+            OrderManagementConfig config = new OrderManagementConfig(
+                    LocalTime.now().minusHours(1),
+                    LocalTime.now().plusHours(1),
+                    100
+            );
+            int[] closes = new int[1];
+            config.eventSink = new SilentEventSink() {
+                @Override
+                public void close() {
+                    closes[0]++;
+                }
+            };
+            config.exchangeAddress = first.address();
+            try {
+                new ShardedOrderManagement(config, 2);
+            } catch (IllegalArgumentException e) {
+                System.out.println("Shared address rejected: " + e.getMessage().startsWith("Shards can't share"));
+            }
+            config.exchangeAddress = null;
+
+            ShardedOrderManagement engine = new ShardedOrderManagement(config,
+                    new InetSocketAddress[] {first.address(), second.address()});
+            for (int i = 0; i < 4; i++) {
+                engine.onData(request(3700 + i, RequestType.New, 100.0)); // symbol 0, shard 0
+                OrderRequest other = request(3710 + i, RequestType.New, 100.0);
+                other.m_symbolId = 1; // shard 1
+                engine.onData(other);
+            }
+            Thread.sleep(200);
+            System.out.println("Exchange orders received: " + first.requestsReceived() + " and "
+                    + second.requestsReceived());
+            engine.stop();
+            System.out.println("Sink closed " + closes[0] + " time(s)");
+        } catch (IOException | InterruptedException e) {
+            System.out.println("Sharded sessions test failed: " + e);
+        }
+        // Expected: "Shared address rejected: true", "Exchange orders received: 4 and 4", "Sink closed 1 time(s)"
+    }
+
+    private static void testCancelNotTransmitted() {
+        System.out.println("\n--- Test: Cancel Not Transmitted (raw exchange socket) ---");
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            OrderManagementConfig config = new OrderManagementConfig(
+                    LocalTime.now().minusHours(1),
+                    LocalTime.now().plusHours(1),
+                    100
+            );
+            config.exchangeAddress = (InetSocketAddress) server.getLocalAddress();
+            config.eventSink = new ConsoleEventSink();
+            OrderManagement om = new OrderManagement(config);
+            RequestOutcome[] outcome = new RequestOutcome[1];
+
+            SocketChannel first = server.accept();
+            ackLogon(first);
+            om.onData(request(3800, RequestType.New, 100.0));
+            Thread.sleep(50);
+            om.onData(accept(3800, RequestType.New));
+            first.close(); // the session drops and reconnects after its backoff
+            Thread.sleep(50);
+            om.onData(request(3801, RequestType.New, 100.0)); // refused during the backoff
+
+            SocketChannel second = server.accept(); // the Logon goes unanswered
+            Thread.sleep(50);
+            om.onData(new OrderRequest[] {request(3800, RequestType.Cancel, 0.0)}, 0, 1, outcome); // held behind it
+            second.close(); // handed back unsent
+            Thread.sleep(50);
+
+            SocketChannel third = server.accept();
+            ackLogon(third);
+            om.onData(new OrderRequest[] {request(3800, RequestType.Cancel, 0.0)}, 0, 1, outcome);
+            System.out.println("Cancel resent: " + outcome[0]);
+            om.stop();
+            third.close();
+        } catch (IOException | InterruptedException e) {
+            System.out.println("Cancel not transmitted test failed: " + e);
+        }
+        // Expected: "Sending order: 3800", "Response: ID=3800, Status=Accept",
+        // "[Rejected] Order 3801: NotTransmitted" (backing off), "Sending order: 3800" and
+        // "[Rejected] Order 3800: NotTransmitted" (the first Cancel), "Sending order: 3800", "Cancel resent: Sent"
+    }
+
+    private static void ackLogon(SocketChannel exchange) throws IOException, InterruptedException {
+        Thread.sleep(50); // lets the Logon arrive first
+        ByteBuffer logon = ByteBuffer.allocate(WireFormat.HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+        WireFormat.encodeSessionMessage(logon, 0, WireFormat.LOGON_TEMPLATE_ID);
+        exchange.write(logon);
+        Thread.sleep(50);
+    }
+
+    private static void testFairQueueBypass() {
+        System.out.println("\n--- Test: Fair Queue Bypass (hand-fed global permits) ---");
+        OrderManagementConfig config = new OrderManagementConfig(
+                LocalTime.now().minusHours(1),
+                LocalTime.now().plusHours(1),
+                1
+        );
+        AtomicInteger permits = new AtomicInteger(1);
+        config.globalThrottle = new OrderThrottle() {
+            @Override
+            public boolean tryAcquire(long nowNanos) {
+                return permits.getAndUpdate(p -> Math.max(0, p - 1)) > 0;
+            }
+
+            @Override
+            public boolean canAcquire(long nowNanos) {
+                return permits.get() > 0;
+            }
+        };
+        config.eventSink = new ConsoleEventSink();
+        OrderManagement om = new OrderManagement(config);
+        om.onData(request(3900, RequestType.New, 100.0)); // symbol 0, takes the only permit
+        om.onData(request(3901, RequestType.New, 100.0)); // queued
+        OrderRequest other = request(3902, RequestType.New, 100.0);
+        other.m_symbolId = 1;
+        om.onData(other); // queued
+        permits.set(1);
+        OrderRequest fresh = request(3903, RequestType.New, 100.0);
+        fresh.m_symbolId = 2; // nothing queued for it, but the backlog comes first
+        RequestOutcome[] outcome = new RequestOutcome[1];
+        om.onData(new OrderRequest[] {fresh}, 0, 1, outcome);
+        System.out.println("Fresh symbol: " + outcome[0] + ", pending: " + om.pendingOrderCount());
+        om.stop();
+        // Expected: "Sending order: 3900", "Sending order: 3901", "Fresh symbol: Queued, pending: 2"
+    }
+
+    private static OrderRequest request(long orderId, RequestType type, double price) {
+        OrderRequest req = new OrderRequest();
+        req.m_orderId = orderId;
+        req.m_requestType = type;
+        req.m_price = price;
+        req.m_qty = 10;
+        req.m_side = 'B';
+        return req;
+    }
+
+    private static OrderResponse accept(long orderId, RequestType answered) {
+        OrderResponse resp = new OrderResponse();
+        resp.m_orderId = orderId;
+        resp.m_responseType = ResponseType.Accept;
+        resp.m_requestType = answered;
+        return resp;
+    }
 }
@@ -0,0 +1,29 @@
+/*
+ * Discards every event - for tests and benchmarks that create many
+ * instances and don't look at their output.
+ */
+public class SilentEventSink implements OmsEventSink {
+    @Override
+    public void onOrderSent(OrderRequest order) {
+    }
+
+    @Override
+    public void onOrderRejected(OrderRequest order, RejectReason reason) {
+    }
+
+    @Override
+    public void onResponse(OrderResponse response, long latencyNanos) {
+    }
+
+    @Override
+    public void onOrderTimeout(long orderId, int symbolId, long ageNanos) {
+    }
+
+    @Override
+    public void onLogon() {
+    }
+
+    @Override
+    public void onLogout() {
+    }
+}